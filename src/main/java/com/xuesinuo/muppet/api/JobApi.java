@@ -0,0 +1,100 @@
+package com.xuesinuo.muppet.api;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.stereotype.Component;
+
+import com.xuesinuo.muppet.config.ApiResult;
+import com.xuesinuo.muppet.config.exceptions.ServiceException;
+import com.xuesinuo.muppet.job.PrintJob;
+import com.xuesinuo.muppet.job.PrintJobService;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.Json;
+import io.vertx.ext.web.Router;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+
+@Component
+@RequiredArgsConstructor
+public class JobApi {
+
+    private final Router router;
+    private final Vertx vertx;
+    private final PrintJobService printJobService;
+
+    @PostConstruct
+    public void start() {
+        getPipelineStats();
+        jobEvents();
+        getJob();
+    }
+
+    /** 打印流水线统计：各阶段吞吐量、队列深度，各打印机通道排队数 */
+    private void getPipelineStats() {
+        router.route("/api/getPipelineStats").handler(http -> {
+            http.response().write(ApiResult.ok(printJobService.stats()));
+            http.next();
+        });
+    }
+
+    /**
+     * 任务状态推送（Server-Sent Events）
+     * 
+     * 一个连接可跟踪任意多个任务：ids 参数为逗号分隔的任务ID，不传则推送所有任务；每次状态变化推送一条 job 事件，内容为任务 JSON
+     */
+    private void jobEvents() {
+        router.route("/api/jobs/events").handler(http -> {
+            Set<String> ids = Arrays.stream(String.valueOf(http.request().getParam("ids", "")).split(","))
+                    .map(String::trim)
+                    .filter(id -> !id.isEmpty())
+                    .collect(Collectors.toSet());
+            HttpServerResponse response = http.response();
+            response.putHeader("Content-Type", "text/event-stream; charset=utf-8")
+                    .putHeader("Cache-Control", "no-cache")
+                    .putHeader("Connection", "keep-alive");
+            // 先推送已知任务的当前状态，避免订阅前的状态变化丢失
+            for (String id : ids) {
+                PrintJob job = printJobService.get(id);
+                if (job != null) {
+                    response.write("event: job\ndata: " + Json.encode(job) + "\n\n");
+                }
+            }
+            MessageConsumer<String> consumer = vertx.eventBus().consumer(PrintJobService.EVENT_ADDRESS, message -> {
+                if (response.closed()) {
+                    return;
+                }
+                if (ids.isEmpty() || ids.contains(message.headers().get("jobId"))) {
+                    response.write("event: job\ndata: " + message.body() + "\n\n");
+                }
+            });
+            // 心跳，防止中间代理断开空闲连接
+            long heartbeat = vertx.setPeriodic(15_000, id -> {
+                if (!response.closed()) {
+                    response.write(": ping\n\n");
+                }
+            });
+            response.closeHandler(v -> {
+                consumer.unregister();
+                vertx.cancelTimer(heartbeat);
+            });
+            // 长连接，不调用 http.next()
+        });
+    }
+
+    /** 查询任务状态及各阶段时间 */
+    private void getJob() {
+        router.route("/api/jobs/:id").handler(http -> {
+            PrintJob job = printJobService.get(http.pathParam("id"));
+            if (job == null) {
+                throw new ServiceException("Job not found or expired: " + http.pathParam("id"));
+            }
+            http.response().write(ApiResult.ok(job));
+            http.next();
+        });
+    }
+}
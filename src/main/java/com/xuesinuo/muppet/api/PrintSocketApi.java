@@ -0,0 +1,201 @@
+package com.xuesinuo.muppet.api;
+
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.springframework.stereotype.Component;
+
+import com.xuesinuo.muppet.config.ApiResultCode;
+import com.xuesinuo.muppet.config.MuppetConfig;
+import com.xuesinuo.muppet.config.exceptions.BusyException;
+import com.xuesinuo.muppet.config.exceptions.ParamException;
+import com.xuesinuo.muppet.config.exceptions.ServiceException;
+import com.xuesinuo.muppet.job.PrintJob;
+import com.xuesinuo.muppet.job.PrintJobState;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.Json;
+import io.vertx.core.net.NetServer;
+import io.vertx.core.net.NetSocket;
+import io.vertx.core.parsetools.RecordParser;
+import io.vertx.ext.web.Router;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 长连接打印接口：手持扫描枪等每扫描一次就打印一张标签的客户端，保持一个连接连续发送打印命令，
+ * 不再为每张标签承担一次 HTTP 请求（跨域检查、请求头、分块响应）
+ *
+ * WebSocket：/ws/print（与 HTTP 接口同端口），每条文本或二进制消息是一条 JSON 打印命令；
+ * TCP：muppet.socket.tcpPort（默认不开启），每帧为 4 字节大端长度 + JSON 打印命令，确认消息格式相同。
+ * 命令受理后立即回复 QUEUED 确认，任务结束后再回复 DONE 或 FAILED；确认带回命令的 id，客户端无需等待确认即可发送下一条。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PrintSocketApi {
+
+    private final Router router;
+    private final Vertx vertx;
+    private final PrinterApi printerApi;
+    private NetServer tcpServer;
+
+    /**
+     * 打印命令：使用已注册的模板
+     */
+    @Data
+    public static class PrintCommand {
+        /** 命令编号（客户端自定），原样带回确认中 */
+        private String id;
+        /** 已注册的模板ID */
+        private String templateId;
+        /** 模板数据 d */
+        private Map<String, Object> data;
+        private String printerNameOrId;
+        /** 是否按打印机分辨率截图为位图打印，默认按打印机的送打印机方式 */
+        private Boolean raster;
+        /** 是否跳过渲染缓存 */
+        private Boolean skipCache;
+    }
+
+    /**
+     * 命令确认
+     */
+    @AllArgsConstructor
+    @Data
+    public static class PrintAck {
+        public String id; // 命令编号
+        public ApiResultCode code; // 结果编码，与 HTTP 接口相同
+        public String jobId; // 任务ID，未受理时为 null
+        public PrintJobState state; // QUEUED（已受理）、DONE、FAILED，未受理时为 null
+        public String message; // 失败原因
+    }
+
+    @PostConstruct
+    public void start() {
+        webSocket();
+        if (MuppetConfig.SOCKET_TCP_PORT > 0) {
+            tcpServer = vertx.createNetServer().connectHandler(this::tcpConnection);
+            tcpServer.listen(MuppetConfig.SOCKET_TCP_PORT)
+                    .onSuccess(server -> log.info("Print socket run on TCP port: " + server.actualPort()))
+                    .onFailure(error -> log.error("Print socket listen failed on TCP port: "
+                            + MuppetConfig.SOCKET_TCP_PORT, error));
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (tcpServer != null) {
+            tcpServer.close();
+        }
+    }
+
+    /** WebSocket 长连接 */
+    private void webSocket() {
+        router.route("/ws/print").handler(http -> {
+            http.request().toWebSocket()
+                    .onSuccess(ws -> {
+                        Consumer<String> send = ack -> {
+                            if (!ws.isClosed()) {
+                                ws.writeTextMessage(ack);
+                            }
+                        };
+                        ws.textMessageHandler(text -> command(Buffer.buffer(text), send));
+                        ws.binaryMessageHandler(frame -> command(frame, send));
+                        ws.exceptionHandler(error -> log.warn("Print socket error: {}", error.toString()));
+                    })
+                    .onFailure(error -> http.fail(error));
+        });
+    }
+
+    /** TCP 长连接：4 字节长度 + 命令 */
+    private void tcpConnection(NetSocket socket) {
+        Consumer<String> send = ack -> {
+            Buffer body = Buffer.buffer(ack);
+            socket.write(Buffer.buffer(4 + body.length()).appendInt(body.length()).appendBuffer(body));
+        };
+        RecordParser parser = RecordParser.newFixed(4, socket);
+        parser.handler(new Handler<Buffer>() {
+            private boolean header = true;
+
+            @Override
+            public void handle(Buffer buffer) {
+                if (!header) {
+                    command(buffer, send);
+                    parser.fixedSizeMode(4);
+                    header = true;
+                    return;
+                }
+                int length = buffer.getInt(0);
+                if (length <= 0 || length > MuppetConfig.BODY_MAX_BYTES) {
+                    log.warn("Print socket frame length {} rejected, closing {}", length, socket.remoteAddress());
+                    socket.close();
+                    return;
+                }
+                parser.fixedSizeMode(length);
+                header = false;
+            }
+        });
+        parser.exceptionHandler(error -> log.warn("Print socket error: {}", error.toString()));
+    }
+
+    /** 处理一条命令：受理后立即确认，任务结束后再确认一次 */
+    private void command(Buffer frame, Consumer<String> send) {
+        PrintCommand command;
+        try {
+            command = Json.decodeValue(frame, PrintCommand.class);
+        } catch (DecodeException e) {
+            send.accept(Json.encode(new PrintAck(null, ApiResultCode.PARAM_ERROR, null, null,
+                    "ParamException: " + e.getMessage())));
+            return;
+        }
+        PrintJob job;
+        try {
+            job = printerApi.submitTemplate(command.getPrinterNameOrId(), command.getTemplateId(), command.getData(),
+                    command.getRaster(), command.getSkipCache());
+        } catch (RuntimeException e) {
+            send.accept(Json.encode(new PrintAck(command.getId(), code(e), null, null, message(e))));
+            return;
+        }
+        send.accept(Json.encode(new PrintAck(command.getId(), ApiResultCode.SUCCESS, job.getJobId(),
+                PrintJobState.QUEUED, null)));
+        Context context = vertx.getOrCreateContext();
+        Future.fromCompletionStage(job.getFuture(), context).onComplete(done -> {
+            send.accept(Json.encode(done.succeeded()
+                    ? new PrintAck(command.getId(), ApiResultCode.SUCCESS, job.getJobId(), PrintJobState.DONE, null)
+                    : new PrintAck(command.getId(), code(done.cause()), job.getJobId(), PrintJobState.FAILED,
+                            job.getError())));
+        });
+    }
+
+    /** 与 HTTP 接口相同的异常编码 */
+    private ApiResultCode code(Throwable error) {
+        if (error instanceof ParamException) {
+            return ApiResultCode.PARAM_ERROR;
+        }
+        if (error instanceof BusyException) {
+            return ApiResultCode.BUSY_ERROR;
+        }
+        if (error instanceof ServiceException) {
+            return ApiResultCode.SERVICE_ERROR;
+        }
+        return ApiResultCode.SYSTEM_ERROR;
+    }
+
+    private String message(Throwable error) {
+        if (code(error) == ApiResultCode.SYSTEM_ERROR) {
+            log.error("Print socket command failed", error);
+            return "System error.";
+        }
+        return error.getClass().getSimpleName() + ": " + error.getMessage();
+    }
+}
@@ -1,21 +1,43 @@
 package com.xuesinuo.muppet.api;
 
-import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 import org.springframework.stereotype.Component;
 
 import com.xuesinuo.muppet.config.ApiResult;
+import com.xuesinuo.muppet.config.MuppetConfig;
 import com.xuesinuo.muppet.config.exceptions.ParamException;
+import com.xuesinuo.muppet.job.PrintJob;
+import com.xuesinuo.muppet.job.PrintJobService;
+import com.xuesinuo.muppet.tool.BrowserPool;
+import com.xuesinuo.muppet.tool.PrintMode;
+import com.xuesinuo.muppet.tool.PrinterGroups;
+import com.xuesinuo.muppet.tool.PrinterRegistry;
 import com.xuesinuo.muppet.tool.PrinterUtil;
+import com.xuesinuo.muppet.tool.TemplateRegistry;
+import com.xuesinuo.muppet.vertx.WorkerPools;
 import com.xuesinuo.xtool.Np;
 
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.json.Json;
+import io.vertx.ext.web.FileUpload;
 import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
 import jakarta.annotation.PostConstruct;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
@@ -28,18 +50,39 @@ public class PrinterApi {
 
     private final Router router;
     private final Vertx vertx;
+    private final PrintJobService printJobService;
+    private final WorkerPools workerPools;
 
     @PostConstruct
     public void start() {
+        warmUpBrowsers();
         getAllPrinters();
+        setPrinterSettings();
+        getPrinterGroups();
+        setPrinterGroup();
+        registerTemplate();
+        removeTemplate();
         print();
+        printBatch();
         printPDF();
     }
 
+    /** 后台预热浏览器池和打印机列表 */
+    private void warmUpBrowsers() {
+        workerPools.execute(WorkerPools.Pool.DISCOVERY, () -> {
+            PrinterRegistry.refresh();
+            return null;
+        }).onFailure(error -> log.warn("Printer lookup failed", error));
+        workerPools.execute(WorkerPools.Pool.RENDER, () -> {
+            BrowserPool.warmUp();
+            return null;
+        }).onFailure(error -> log.warn("Browser warm up failed", error));
+    }
+
     /** 获取所有打印机信息 */
     private void getAllPrinters() {
         router.route("/api/getAllPrinters").handler(http -> {
-            vertx.executeBlocking(() -> {
+            workerPools.execute(WorkerPools.Pool.DISCOVERY, () -> {
                 List<PrinterUtil.PrinterInfo> printers = PrinterUtil.listPrinters();
                 return printers;
             }).onSuccess(printers -> {
@@ -50,6 +93,113 @@ public class PrinterApi {
         });
     }
 
+    @Data
+    public static class PrinterSettingsParam {
+        private String printerNameOrId;
+        /** 送打印机方式，为空时恢复默认 */
+        private PrintMode printMode;
+        /** 位图模式和标签机原始指令模式的分辨率，为空时恢复默认 */
+        private Integer labelDpi;
+    }
+
+    /** 按打印机设置送打印机方式 */
+    private void setPrinterSettings() {
+        router.route("/api/setPrinterSettings").handler(http -> {
+            PrinterSettingsParam settingsParam = Np.i(http.body())
+                    .x(x -> x.buffer())
+                    .x(x -> Json.decodeValue(x, PrinterSettingsParam.class))
+                    .o(new PrinterSettingsParam());
+            if (settingsParam.getPrinterNameOrId() == null || settingsParam.getPrinterNameOrId().isBlank()) {
+                throw new ParamException("must provide: printerNameOrId");
+            }
+            PrinterUtil.setPrintMode(settingsParam.getPrinterNameOrId(), settingsParam.getPrintMode());
+            PrinterUtil.setLabelDpi(settingsParam.getPrinterNameOrId(), settingsParam.getLabelDpi());
+            http.response().write(ApiResult.ok(Map.of(
+                    "printMode", PrinterUtil.getPrintMode(settingsParam.getPrinterNameOrId()),
+                    "labelDpi", PrinterUtil.getLabelDpi(settingsParam.getPrinterNameOrId()))));
+            http.next();
+        });
+    }
+
+    /** 获取所有打印机组 */
+    private void getPrinterGroups() {
+        router.route("/api/getPrinterGroups").handler(http -> {
+            http.response().write(ApiResult.ok(Map.of("groups", PrinterGroups.list())));
+            http.next();
+        });
+    }
+
+    @Data
+    public static class PrinterGroupParam {
+        private String name;
+        /** 成员打印机，为空时删除该组 */
+        private List<String> members;
+    }
+
+    /** 设置打印机组，printerNameOrId 填组名时分配给组内排队最少的打印机 */
+    private void setPrinterGroup() {
+        router.route("/api/setPrinterGroup").handler(http -> {
+            PrinterGroupParam groupParam = Np.i(http.body())
+                    .x(x -> x.buffer())
+                    .x(x -> Json.decodeValue(x, PrinterGroupParam.class))
+                    .o(new PrinterGroupParam());
+            if (groupParam.getName() == null || groupParam.getName().isBlank()) {
+                throw new ParamException("must provide: name");
+            }
+            PrinterGroups.PrinterGroup group = PrinterGroups.set(groupParam.getName(), groupParam.getMembers());
+            http.response().write(ApiResult.ok(Map.of("removed", group == null)));
+            http.next();
+        });
+    }
+
+    @Data
+    public static class TemplateParam {
+        private String templateId;
+        private String html;
+        private Double pageWidth;
+        private Double pageHeight;
+        private Map<String, String> imports;
+    }
+
+    /** 注册打印模板，模板加载一次后常驻预热页面，打印时只需传入数据 */
+    private void registerTemplate() {
+        router.route("/api/registerTemplate").handler(http -> {
+            TemplateParam templateParam = Np.i(http.body())
+                    .x(x -> x.buffer())
+                    .x(x -> Json.decodeValue(x, TemplateParam.class))
+                    .o(new TemplateParam());
+            if (templateParam.getTemplateId() == null || templateParam.getTemplateId().isBlank()
+                    || templateParam.getHtml() == null || templateParam.getHtml().isBlank()
+                    || templateParam.getPageWidth() == null || templateParam.getPageHeight() == null) {
+                throw new ParamException("must provide: templateId, html, pageWidth, pageHeight");
+            }
+            workerPools.execute(WorkerPools.Pool.RENDER, () -> {
+                return TemplateRegistry.register(templateParam.getTemplateId(), templateParam.getHtml(),
+                        templateParam.getImports(), templateParam.getPageWidth(), templateParam.getPageHeight());
+            }).onSuccess(template -> http.response().write(ApiResult.ok(template)))
+                    .onFailure(error -> http.fail(error))
+                    .onComplete(r -> http.next());
+        });
+    }
+
+    /** 删除打印模板 */
+    private void removeTemplate() {
+        router.route("/api/removeTemplate").handler(http -> {
+            TemplateParam templateParam = Np.i(http.body())
+                    .x(x -> x.buffer())
+                    .x(x -> Json.decodeValue(x, TemplateParam.class))
+                    .o(new TemplateParam());
+            if (templateParam.getTemplateId() == null || templateParam.getTemplateId().isBlank()) {
+                throw new ParamException("must provide: templateId");
+            }
+            workerPools.execute(WorkerPools.Pool.RENDER, () -> {
+                return TemplateRegistry.remove(templateParam.getTemplateId());
+            }).onSuccess(removed -> http.response().write(ApiResult.ok(Map.of("removed", removed))))
+                    .onFailure(error -> http.fail(error))
+                    .onComplete(r -> http.next());
+        });
+    }
+
     @Data
     public static class PrintParam {
         private String html;
@@ -57,58 +207,383 @@ public class PrinterApi {
         private Double pageWidth;
         private Double pageHeight;
         private Map<String, String> imports;
+        /** 二进制 imports（图片、字体等），JSON 中为 base64，multipart 请求中为以文件路径命名的文件字段 */
+        private Map<String, byte[]> binaryImports;
         private Boolean waitJsReady;
+        /** 已注册的模板ID，提供时只需传入 data，无需 html 和页面尺寸 */
+        private String templateId;
+        /** 模板数据 d */
+        private Map<String, Object> data;
+        /** 是否等打印完成再返回，默认提交后立即返回任务ID */
+        private Boolean waitDone;
+        /** 是否按打印机分辨率截图为位图打印（不生成 PDF），默认按打印机的送打印机方式 */
+        private Boolean raster;
+        /** 是否跳过渲染缓存，内容相同但依赖外部变化（如当前时间、远程图片）时使用 */
+        private Boolean skipCache;
     }
 
-    /** 打印 */
+    /** 打印：请求体为 PrintParam 的 JSON，或 multipart（param 字段为 JSON，文件字段为二进制 imports） */
     private void print() {
         router.route("/api/print").handler(http -> {
+            String contentType = http.request().getHeader(HttpHeaders.CONTENT_TYPE);
+            if (contentType != null && contentType.toLowerCase().startsWith("multipart/form-data")) {
+                multipartPrintParam(http)
+                        .map(printParam -> {
+                            print(http, printParam);
+                            return null;
+                        })
+                        .onFailure(error -> http.fail(error));
+                return;
+            }
             PrintParam printParam = Np.i(http.body())
-                    .x(x -> x.asString())
+                    .x(x -> x.buffer())
                     .x(x -> Json.decodeValue(x, PrintParam.class))
                     .o(new PrintParam());
-            String html = printParam.getHtml();
-            String printerNameOrId = printParam.getPrinterNameOrId();
-            Double pageWidth = printParam.getPageWidth();
-            Double pageHeight = printParam.getPageHeight();
-            Map<String, String> imports = printParam.getImports();
-            if (html == null || html.isBlank()
-                    || printerNameOrId == null || printerNameOrId.isBlank()
-                    || pageWidth == null || pageHeight == null) {
-                throw new ParamException("must provide: html, printerNameOrId, pageWidth, pageHeight");
+            print(http, printParam);
+        });
+    }
+
+    private void print(RoutingContext http, PrintParam printParam) {
+        if (printParam.getTemplateId() != null && !printParam.getTemplateId().isBlank()) {
+            printTemplate(http, printParam);
+            return;
+        }
+        String html = printParam.getHtml();
+        String printerNameOrId = printParam.getPrinterNameOrId();
+        Double pageWidth = printParam.getPageWidth();
+        Double pageHeight = printParam.getPageHeight();
+        Map<String, String> imports = printParam.getImports();
+        Map<String, byte[]> binaryImports = printParam.getBinaryImports();
+        if (html == null || html.isBlank()
+                || printerNameOrId == null || printerNameOrId.isBlank()
+                || pageWidth == null || pageHeight == null) {
+            throw new ParamException("must provide: html, printerNameOrId, pageWidth, pageHeight");
+        }
+        int rasterDpi = rasterDpi(printParam.getRaster(), printerNameOrId);
+        boolean skipCache = printParam.getSkipCache() != null && printParam.getSkipCache();
+        PrintJob job = PrintJob.ofRender(printerNameOrId, () -> PrinterUtil.renderHtmlRaster(html, imports,
+                binaryImports, pageWidth, pageHeight, printParam.getWaitJsReady(), rasterDpi, skipCache));
+        job.setRaster(rasterDpi > 0);
+        respondJob(http, printJobService.submit(job), printParam.getWaitDone());
+    }
+
+    /**
+     * multipart 打印参数：param 字段为 PrintParam 的 JSON，每个文件字段以字段名（如 img/logo.png）作为 imports 路径，
+     * 文件原样作为二进制 imports，无需 base64；上传的临时文件在请求结束后删除
+     */
+    private Future<PrintParam> multipartPrintParam(RoutingContext http) {
+        String param = http.request().getFormAttribute("param");
+        PrintParam printParam = param == null || param.isBlank()
+                ? new PrintParam()
+                : Json.decodeValue(param, PrintParam.class);
+        List<FileUpload> uploads = http.fileUploads();
+        List<Future<Buffer>> reads = uploads.stream()
+                .map(upload -> vertx.fileSystem().readFile(upload.uploadedFileName()))
+                .toList();
+        return Future.all(reads).map(r -> {
+            Map<String, byte[]> binaryImports = new HashMap<>();
+            if (printParam.getBinaryImports() != null) {
+                binaryImports.putAll(printParam.getBinaryImports());
+            }
+            for (int i = 0; i < uploads.size(); i++) {
+                binaryImports.put(uploads.get(i).name(), reads.get(i).result().getBytes());
+            }
+            printParam.setBinaryImports(binaryImports);
+            return printParam;
+        });
+    }
+
+    /** 使用已注册的模板打印 */
+    private void printTemplate(RoutingContext http, PrintParam printParam) {
+        PrintJob job = submitTemplate(printParam.getPrinterNameOrId(), printParam.getTemplateId(), printParam.getData(),
+                printParam.getRaster(), printParam.getSkipCache());
+        respondJob(http, job, printParam.getWaitDone());
+    }
+
+    /**
+     * 提交使用已注册模板的打印任务（长连接接口共用）
+     */
+    PrintJob submitTemplate(String printerNameOrId, String templateId, Map<String, Object> data, Boolean raster,
+            Boolean skipCache) {
+        if (templateId == null || templateId.isBlank() || printerNameOrId == null || printerNameOrId.isBlank()) {
+            throw new ParamException("must provide: templateId, printerNameOrId");
+        }
+        int rasterDpi = rasterDpi(raster, printerNameOrId);
+        boolean skip = skipCache != null && skipCache;
+        PrintJob job = PrintJob.ofRender(printerNameOrId,
+                () -> PrinterUtil.renderTemplateRaster(templateId, data, rasterDpi, skip));
+        job.setRaster(rasterDpi > 0);
+        return printJobService.submit(job);
+    }
+
+    /** 位图模式的分辨率：请求指定 raster 时优先，否则按打印机的送打印机方式；0 表示生成 PDF */
+    private int rasterDpi(Boolean raster, String printerNameOrId) {
+        boolean useRaster = raster != null ? raster : PrinterUtil.getPrintMode(printerNameOrId) == PrintMode.RASTER;
+        return useRaster ? PrinterUtil.getLabelDpi(printerNameOrId) : 0;
+    }
+
+    @Data
+    public static class BatchPrintParam {
+        /** 默认打印机，条目未指定打印机时使用 */
+        private String printerNameOrId;
+        /** 打印条目，与 templateId + records 二选一 */
+        private List<PrintParam> items;
+        /** 已注册的模板ID，配合 records 使用 */
+        private String templateId;
+        /** 模板数据，每条生成一个文档 */
+        private List<Map<String, Object>> records;
+        /** 是否把同一打印机的文档合并为一个多页 PDF 再送打印机（位图模式不适用） */
+        private Boolean merge;
+        /** 是否按打印机分辨率截图为位图打印，默认按打印机的送打印机方式 */
+        private Boolean raster;
+        /** 是否跳过渲染缓存（对全部条目生效，条目也可单独指定） */
+        private Boolean skipCache;
+        /** 是否等打印完成再返回 */
+        private Boolean waitDone;
+    }
+
+    /** 批量打印：同一打印机的条目在一个浏览器上下文中依次渲染，作为一个任务送打印机；任一打印机拒绝时整批不受理 */
+    private void printBatch() {
+        router.route("/api/printBatch").handler(http -> {
+            BatchPrintParam batchParam = Np.i(http.body())
+                    .x(x -> x.buffer())
+                    .x(x -> Json.decodeValue(x, BatchPrintParam.class))
+                    .o(new BatchPrintParam());
+            boolean skipCache = batchParam.getSkipCache() != null && batchParam.getSkipCache();
+            // 按打印机分组，保持提交顺序
+            Map<String, List<PrinterUtil.RenderRequest>> groups = new LinkedHashMap<>();
+            if (batchParam.getTemplateId() != null && !batchParam.getTemplateId().isBlank()) {
+                if (batchParam.getRecords() == null || batchParam.getRecords().isEmpty()
+                        || batchParam.getPrinterNameOrId() == null || batchParam.getPrinterNameOrId().isBlank()) {
+                    throw new ParamException("must provide: templateId, records, printerNameOrId");
+                }
+                List<PrinterUtil.RenderRequest> requests = new ArrayList<>();
+                for (Map<String, Object> record : batchParam.getRecords()) {
+                    PrinterUtil.RenderRequest request = new PrinterUtil.RenderRequest();
+                    request.setTemplateId(batchParam.getTemplateId());
+                    request.setData(record);
+                    request.setSkipCache(skipCache);
+                    requests.add(request);
+                }
+                groups.put(batchParam.getPrinterNameOrId(), requests);
+            } else {
+                if (batchParam.getItems() == null || batchParam.getItems().isEmpty()) {
+                    throw new ParamException("must provide: items or templateId + records");
+                }
+                for (PrintParam item : batchParam.getItems()) {
+                    String printerNameOrId = item.getPrinterNameOrId() == null || item.getPrinterNameOrId().isBlank()
+                            ? batchParam.getPrinterNameOrId()
+                            : item.getPrinterNameOrId();
+                    if (printerNameOrId == null || printerNameOrId.isBlank()) {
+                        throw new ParamException("must provide: printerNameOrId");
+                    }
+                    groups.computeIfAbsent(printerNameOrId, k -> new ArrayList<>()).add(toRenderRequest(item, skipCache));
+                }
+            }
+            boolean merge = batchParam.getMerge() != null && batchParam.getMerge();
+            List<PrintJob> jobs = new ArrayList<>();
+            for (Map.Entry<String, List<PrinterUtil.RenderRequest>> group : groups.entrySet()) {
+                List<PrinterUtil.RenderRequest> requests = group.getValue();
+                int rasterDpi = rasterDpi(batchParam.getRaster(), group.getKey());
+                PrintJob job = PrintJob.ofBatch(group.getKey(), () -> {
+                    List<byte[]> documents = PrinterUtil.renderBatch(requests, rasterDpi);
+                    return merge && rasterDpi == 0 ? List.of(PrinterUtil.mergePdf(documents)) : documents;
+                });
+                job.setRaster(rasterDpi > 0);
+                jobs.add(job);
             }
-            vertx.executeBlocking(() -> {
-                PrinterUtil.printHtml(html, imports, printParam.getPrinterNameOrId(), printParam.getPageWidth(),
-                        printParam.getPageHeight(), printParam.getWaitJsReady());
-                return null;
-            }).onSuccess(r -> http.response().write(ApiResult.ok()))
+            // 各打印机的任务一起受理或一起拒绝，波次拣货重试时不会重复打印已受理的打印机
+            printJobService.submitAll(jobs);
+            List<String> jobIds = jobs.stream().map(PrintJob::getJobId).toList();
+            if (batchParam.getWaitDone() == null || !batchParam.getWaitDone()) {
+                http.response().write(ApiResult.ok(Map.of("jobIds", jobIds)));
+                http.next();
+                return;
+            }
+            Future.all(jobs.stream()
+                    .map(job -> Future.fromCompletionStage(job.getFuture(), vertx.getOrCreateContext()))
+                    .toList())
+                    .onSuccess(r -> http.response().write(ApiResult.ok(Map.of("jobIds", jobIds))))
                     .onFailure(error -> http.fail(error))
                     .onComplete(r -> http.next());
         });
     }
 
-    /** 打印PDF文件 */
+    /** 批量条目转为渲染请求 */
+    private PrinterUtil.RenderRequest toRenderRequest(PrintParam item, boolean skipCache) {
+        PrinterUtil.RenderRequest request = new PrinterUtil.RenderRequest();
+        request.setSkipCache(skipCache || item.getSkipCache() != null && item.getSkipCache());
+        if (item.getTemplateId() != null && !item.getTemplateId().isBlank()) {
+            request.setTemplateId(item.getTemplateId());
+            request.setData(item.getData());
+            return request;
+        }
+        if (item.getHtml() == null || item.getHtml().isBlank()
+                || item.getPageWidth() == null || item.getPageHeight() == null) {
+            throw new ParamException("must provide: html, pageWidth, pageHeight (or templateId) for every item");
+        }
+        request.setHtml(item.getHtml());
+        request.setImports(item.getImports());
+        request.setBinaryImports(item.getBinaryImports());
+        request.setPageWidthMm(item.getPageWidth());
+        request.setPageHeightMm(item.getPageHeight());
+        request.setWaitJsReady(item.getWaitJsReady());
+        return request;
+    }
+
+    /** 返回任务ID；waitDone 为 true 时等打印完成再返回（兼容同步调用的旧客户端） */
+    private void respondJob(RoutingContext http, PrintJob job, Boolean waitDone) {
+        if (waitDone == null || !waitDone) {
+            http.response().write(ApiResult.ok(Map.of("jobId", job.getJobId())));
+            http.next();
+            return;
+        }
+        Future.fromCompletionStage(job.getFuture(), vertx.getOrCreateContext())
+                .onSuccess(r -> http.response().write(ApiResult.ok(Map.of("jobId", job.getJobId()))))
+                .onFailure(error -> http.fail(error))
+                .onComplete(r -> http.next());
+    }
+
+    /** 打印PDF文件：上传内容流式写入临时文件，不读入内存，由任务队列从文件送打印机 */
     private void printPDF() {
         router.route("/api/printPDF").handler(http -> {
+            HttpServerRequest request = http.request();
+            String contentLength = request.getHeader(HttpHeaders.CONTENT_LENGTH);
+            if (contentLength != null) {
+                long length;
+                try {
+                    length = Long.parseLong(contentLength.trim());
+                } catch (NumberFormatException e) {
+                    throw new ParamException("Invalid Content-Length: " + contentLength);
+                }
+                if (length > MuppetConfig.UPLOAD_MAX_BYTES) {
+                    throw new ParamException("PDF upload too large, limit: " + MuppetConfig.UPLOAD_MAX_BYTES + " bytes");
+                }
+            }
             // 获取类似SpringMvc中MutipartFile的参数
-            http.request().setExpectMultipart(true);
-            http.request().endHandler(v -> {
-                String printerNameOrId = http.request().getFormAttribute("printerNameOrId");
-                for (io.vertx.ext.web.FileUpload fileUpload : http.fileUploads()) {
-                    String tempFilePath = fileUpload.uploadedFileName();
-                    // 读取文件内容
-                    try {
-                        byte[] pdfData = Files.readAllBytes(Path.of(tempFilePath));
-                        if (pdfData == null || printerNameOrId == null || printerNameOrId.isBlank()) {
-                            throw new ParamException("must provide: pdf file and printerNameOrId");
-                        }
-                        PrinterUtil.printPdf(pdfData, printerNameOrId);
-                    } catch (IOException e) {
-                        throw new RuntimeException("/api/printPDF读取PDF文件失败", e);
-                    }
+            request.setExpectMultipart(true);
+            List<Path> files = new ArrayList<>();
+            List<Future<Void>> uploads = new ArrayList<>();
+            // 分块上传没有 Content-Length，写入时累计字节数，超过上限即中止
+            long[] received = { 0 };
+            boolean[] rejected = { false };
+            // 已打开、尚未关闭的文件，中止时关闭后才能删除（Windows 上不能删除打开中的文件）
+            List<AsyncFile> openFiles = new ArrayList<>();
+            Handler<Throwable> abort = error -> {
+                if (rejected[0]) {
+                    return;
+                }
+                rejected[0] = true;
+                Future.all(openFiles.stream().map(AsyncFile::close).toList())
+                        .onComplete(closed -> deleteUploads(files));
+                openFiles.clear();
+                // 响应后断开连接，不再接收剩余数据
+                http.response().endHandler(end -> request.connection().close());
+                http.fail(error);
+            };
+            request.uploadHandler(upload -> {
+                Path file = Path.of(System.getProperty("java.io.tmpdir"), "muppet_upload_" + UUID.randomUUID() + ".pdf");
+                files.add(file);
+                Promise<Void> uploaded = Promise.promise();
+                uploads.add(uploaded.future());
+                upload.pause();
+                vertx.fileSystem().open(file.toString(), new OpenOptions().setWrite(true).setCreate(true))
+                        .onFailure(error -> {
+                            uploaded.tryFail(error);
+                            abort.handle(error);
+                        })
+                        .onSuccess(asyncFile -> {
+                            if (rejected[0]) {
+                                asyncFile.close().onComplete(r -> deleteUploads(List.of(file)));
+                                return;
+                            }
+                            openFiles.add(asyncFile);
+                            upload.handler(buffer -> {
+                                if (rejected[0]) {
+                                    return;
+                                }
+                                received[0] += buffer.length();
+                                if (received[0] > MuppetConfig.UPLOAD_MAX_BYTES) {
+                                    uploaded.tryFail("upload too large");
+                                    abort.handle(new ParamException(
+                                            "PDF upload too large, limit: " + MuppetConfig.UPLOAD_MAX_BYTES + " bytes"));
+                                    return;
+                                }
+                                asyncFile.write(buffer);
+                                if (asyncFile.writeQueueFull()) {
+                                    upload.pause();
+                                    asyncFile.drainHandler(drained -> upload.resume());
+                                }
+                            });
+                            // 中止后文件已关闭
+                            upload.exceptionHandler(error -> {
+                                if (!rejected[0]) {
+                                    openFiles.remove(asyncFile);
+                                    asyncFile.close().onComplete(r -> uploaded.tryFail(error));
+                                }
+                            });
+                            upload.endHandler(end -> {
+                                if (rejected[0]) {
+                                    return;
+                                }
+                                openFiles.remove(asyncFile);
+                                asyncFile.close().onComplete(closed -> {
+                                    if (closed.succeeded()) {
+                                        uploaded.tryComplete();
+                                    } else {
+                                        uploaded.tryFail(closed.cause());
+                                    }
+                                });
+                            });
+                            upload.resume();
+                        });
+            });
+            request.exceptionHandler(error -> {
+                if (rejected[0]) {
+                    return;
                 }
-                http.response().write(ApiResult.ok());
+                deleteUploads(files);
+                http.fail(error);
             });
+            request.endHandler(v -> Future.all(uploads).onComplete(uploaded -> {
+                if (rejected[0]) {
+                    return;
+                }
+                if (uploaded.failed()) {
+                    deleteUploads(files);
+                    http.fail(uploaded.cause());
+                    return;
+                }
+                String printerNameOrId = Np.i(request.getFormAttribute("printerNameOrId"))
+                        .o(http.queryParams().get("printerNameOrId"));
+                if (files.isEmpty() || printerNameOrId == null || printerNameOrId.isBlank()) {
+                    deleteUploads(files);
+                    http.fail(new ParamException("must provide: pdf file and printerNameOrId"));
+                    return;
+                }
+                // 多个文件一起受理或一起拒绝（拒绝时由 submitAll 删除文件），客户端重试不会重复打印
+                List<PrintJob> jobs;
+                try {
+                    jobs = printJobService.submitAll(files.stream()
+                            .map(file -> PrintJob.ofPdfFile(printerNameOrId, file))
+                            .toList());
+                } catch (RuntimeException e) {
+                    http.fail(e);
+                    return;
+                }
+                http.response().write(ApiResult.ok(Map.of("jobIds", jobs.stream().map(PrintJob::getJobId).toList())));
+                http.next();
+            }));
+            request.resume();
         });
     }
+
+    private void deleteUploads(List<Path> files) {
+        workerPools.execute(WorkerPools.Pool.SPOOL, () -> {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+            return null;
+        }).onFailure(error -> log.warn("Failed to delete uploads", error));
+    }
 }
@@ -12,4 +12,6 @@ public enum ApiResultCode {
     SYSTEM_ERROR,
     /** 业务流程 */
     SERVICE_ERROR,
+    /** 繁忙（队列已满），稍后重试 */
+    BUSY_ERROR,
 }
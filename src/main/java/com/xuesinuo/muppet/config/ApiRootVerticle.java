@@ -1,16 +1,22 @@
 package com.xuesinuo.muppet.config;
 
+import java.nio.file.Path;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import org.springframework.stereotype.Component;
 
+import com.fasterxml.jackson.core.StreamReadConstraints;
 import com.xuesinuo.muppet.UiStarter;
 import com.xuesinuo.muppet.api.VersionApi;
+import com.xuesinuo.muppet.config.exceptions.BusyException;
 import com.xuesinuo.muppet.config.exceptions.ParamException;
 import com.xuesinuo.muppet.config.exceptions.ServiceException;
 
+import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.json.Json;
+import io.vertx.core.json.jackson.DatabindCodec;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.client.WebClient;
 import io.vertx.ext.web.handler.BodyHandler;
@@ -26,10 +32,36 @@ public class ApiRootVerticle {
     private final Router router;
     private final WebClient webClient;
 
+    /** 自行流式读取请求体的接口，不经过 BodyHandler（不受请求体大小限制，也不缓存到内存） */
+    public static final Set<String> STREAMING_PATHS = Set.of("/api/printPDF");
+
     @PostConstruct
     public void start() {
+        BodyHandler bodyHandler = BodyHandler.create()
+                .setBodyLimit(MuppetConfig.BODY_MAX_BYTES)// 请求体大小限制
+                .setUploadsDirectory(Path.of(System.getProperty("java.io.tmpdir"), "muppet_uploads").toString())
+                .setDeleteUploadedFilesOnEnd(true);// multipart 的 imports 文件在请求结束后删除
+        // 请求体直接从缓冲区解析（Json.decodeValue(Buffer, ...)），Jackson 默认单个字符串最长 2000 万字符，放宽到请求体上限
+        int maxStringLength = (int) Math.min(Integer.MAX_VALUE, Math.max(MuppetConfig.BODY_MAX_BYTES,
+                StreamReadConstraints.DEFAULT_MAX_STRING_LEN));
+        DatabindCodec.mapper().getFactory().setStreamReadConstraints(
+                StreamReadConstraints.builder().maxStringLength(maxStringLength).build());
         router.route("/api/*").order(Integer.MIN_VALUE)
-                .handler(BodyHandler.create().setBodyLimit(1024 * 1024))// 请求体大小限制
+                .handler(http -> {
+                    // 支持的压缩格式已由 HTTP 服务解压并去掉 Content-Encoding，仍存在说明无法解压（如缺少 Brotli 本地库）
+                    String contentEncoding = http.request().getHeader(HttpHeaders.CONTENT_ENCODING);
+                    if (contentEncoding != null && !contentEncoding.equalsIgnoreCase("identity")) {
+                        throw new ParamException("Unsupported Content-Encoding: " + contentEncoding
+                                + ", supported: gzip, deflate, br");
+                    }
+                    if (STREAMING_PATHS.contains(http.normalizedPath())) {
+                        // 暂停读取，由接口设置好上传处理后再恢复
+                        http.request().pause();
+                        http.next();
+                        return;
+                    }
+                    bodyHandler.handle(http);
+                })
                 .handler(http -> {
                     http.response().setChunked(true).putHeader("Content-Type", "application/json");
                     log.info("API => " + http.request().uri());
@@ -52,6 +84,12 @@ public class ApiRootVerticle {
                             http.response().setStatusCode(200).send(Json.encode(apiResult));
                             return;
                         }
+                        if (t instanceof BusyException) {
+                            apiResult.setCode(ApiResultCode.BUSY_ERROR);
+                            apiResult.setMessage("BusyException: " + t.getMessage());
+                            http.response().setStatusCode(429).putHeader("Retry-After", "1").send(Json.encode(apiResult));
+                            return;
+                        }
                         if (t instanceof ServiceException) {
                             apiResult.setCode(ApiResultCode.SERVICE_ERROR);
                             apiResult.setMessage("ServiceException: " + t.getMessage());
@@ -0,0 +1,155 @@
+package com.xuesinuo.muppet.config;
+
+import java.nio.file.Path;
+
+import com.xuesinuo.muppet.tool.PrintMode;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 运行参数
+ * 
+ * 全部通过JVM系统属性配置（-Dmuppet.xxx=...），未配置时使用默认值。打包时可写入jpackage的javaOptions。
+ */
+@Slf4j
+public class MuppetConfig {
+
+    /** HTTP 服务实例数（每个实例一个事件循环，共用端口） */
+    public static final int WEB_INSTANCES = intValue("muppet.web.instances", Runtime.getRuntime().availableProcessors());
+
+    /** 渲染线程数，所有打印机共用 */
+    public static final int RENDER_THREADS = intValue("muppet.render.threads", Runtime.getRuntime().availableProcessors());
+    /** 浏览器池中最多同时存在的浏览器数量，渲染线程多于浏览器时排队借用 */
+    public static final int BROWSER_POOL_SIZE = intValue("muppet.browser.poolSize",
+            Math.max(2, Math.min(RENDER_THREADS, 4)));
+    /** 启动时预热的浏览器数量 */
+    public static final int BROWSER_WARM_UP = intValue("muppet.browser.warmUp", 1);
+    /** 单个浏览器处理多少个任务后回收重建，防止Chromium内存膨胀 */
+    public static final int BROWSER_MAX_JOBS = intValue("muppet.browser.maxJobs", 500);
+    /** 借用浏览器的最长等待时间（毫秒） */
+    public static final long BROWSER_BORROW_TIMEOUT_MS = longValue("muppet.browser.borrowTimeoutMs", 30_000L);
+    /** 空闲浏览器健康检查间隔（毫秒），0为关闭 */
+    public static final long BROWSER_HEALTH_CHECK_MS = longValue("muppet.browser.healthCheckMs", 60_000L);
+
+    /** 页面和 imports 全部在内存中提供给 Chromium，不写临时文件；关闭后写入临时目录 */
+    public static final boolean RENDER_IN_MEMORY = booleanValue("muppet.render.inMemory", true);
+    /** 调试用：生成的 PDF 另存到此目录，为空时不保存 */
+    public static final String DEBUG_PDF_DIR = stringValue("muppet.debug.pdfDir", "");
+
+    /** 接口阻塞任务线程池：浏览器预热、模板注册 */
+    public static final int WORKER_RENDER_THREADS = intValue("muppet.worker.renderThreads", BROWSER_POOL_SIZE);
+    /** 接口阻塞任务线程池：送打印机相关的文件操作 */
+    public static final int WORKER_SPOOL_THREADS = intValue("muppet.worker.spoolThreads", 2);
+    /** 接口阻塞任务线程池：打印机查询 */
+    public static final int WORKER_DISCOVERY_THREADS = intValue("muppet.worker.discoveryThreads", 2);
+
+    /** 送打印机、查询打印机和 Vert.x 请求处理使用虚拟线程，适合大量打印机、大量在途任务 */
+    public static final boolean VIRTUAL_THREADS = booleanValue("muppet.virtualThreads", false);
+
+    /** 每台打印机最多排队（含渲染中、送打印机中）的任务数，超出时拒绝新任务 */
+    public static final int JOB_QUEUE_DEPTH = intValue("muppet.job.queueDepth", 100);
+    /** 已结束的任务保留多久（毫秒）供查询 */
+    public static final long JOB_RETENTION_MS = longValue("muppet.job.retentionMs", 10 * 60_000L);
+
+    /** 合并送打印机：等待同一打印机后续任务的时间窗口（毫秒），0 表示只合并已在排队且已渲染完成的任务 */
+    public static final long SPOOL_COALESCE_MS = longValue("muppet.spool.coalesceMs", 0);
+    /** 合并送打印机：一个打印任务最多的页数，1 表示不合并 */
+    public static final int SPOOL_COALESCE_PAGES = intValue("muppet.spool.coalescePages", 50);
+
+    /** 默认送打印机方式，可按打印机单独设置：AUTO、PDFBOX、PDF_DIRECT、RASTER、ZPL、ESC_POS、TSPL */
+    public static final PrintMode PRINT_MODE = enumValue("muppet.print.mode", PrintMode.AUTO);
+    /** 位图模式（RASTER）和标签机原始指令模式（ZPL、ESC_POS、TSPL）的默认分辨率，可按打印机单独设置 */
+    public static final int LABEL_DPI = intValue("muppet.label.dpi", 203);
+
+    /** 打印机列表后台刷新间隔（毫秒），0 表示只在查找不到打印机时刷新 */
+    public static final long PRINTER_REFRESH_MS = longValue("muppet.printer.refreshMs", 30_000L);
+    /** 打印机状态（是否接受任务、队列任务数）后台刷新间隔（毫秒），0 表示只在发现打印机时查询一次 */
+    public static final long PRINTER_STATUS_MS = longValue("muppet.printer.statusMs", 5_000L);
+
+    /** 打印机组，格式：组名=打印机1,打印机2;组名2=打印机3,打印机4 */
+    public static final String PRINTER_GROUPS = stringValue("muppet.printer.groups", "");
+
+    /** JSON 请求体（/api/print 等）的最大字节数，HTML 中内嵌 base64 图片时需要调大 */
+    public static final long BODY_MAX_BYTES = longValue("muppet.body.maxBytes", 32L * 1024 * 1024);
+
+    /** 长连接打印的 TCP 端口（每帧为 4 字节长度 + JSON 打印命令），0 表示不开启；WebSocket（/ws/print）与 HTTP 同端口，始终可用 */
+    public static final int SOCKET_TCP_PORT = intValue("muppet.socket.tcpPort", 0);
+
+    /** 流式上传（/api/printPDF）单个请求的最大字节数 */
+    public static final long UPLOAD_MAX_BYTES = longValue("muppet.upload.maxBytes", 512L * 1024 * 1024);
+
+    /** PDFBox 处理单个文档最多使用的内存（字节），更大的文档其余部分写入临时文件、逐页打印时不缓存图片 */
+    public static final long PDF_MEMORY_BYTES = longValue("muppet.pdf.memoryBytes", 32L * 1024 * 1024);
+
+    /** 渲染结果内存缓存的最大字节数，0 表示不使用内存缓存 */
+    public static final long CACHE_MEMORY_BYTES = longValue("muppet.cache.memoryBytes", 64L * 1024 * 1024);
+    /** 渲染结果磁盘缓存的最大字节数，0 表示不使用磁盘缓存 */
+    public static final long CACHE_DISK_BYTES = longValue("muppet.cache.diskBytes", 256L * 1024 * 1024);
+    /** 渲染结果磁盘缓存目录 */
+    public static final String CACHE_DIR = stringValue("muppet.cache.dir",
+            Path.of(System.getProperty("java.io.tmpdir"), "muppet-render-cache").toString());
+
+    /** 浏览器池预热时检查内置字体（HarmonyOS_Sans 等）能否加载，字体文件始终常驻内存 */
+    public static final boolean FONT_VERIFY = booleanValue("muppet.font.verify", true);
+    /** Linux 上把内置字体作为本机字体提供给 Chromium（每个浏览器进程解析一次），其他系统沿用网页字体 */
+    public static final boolean FONT_LOCAL = booleanValue("muppet.font.local", true);
+
+    /** 打印页面引用的远程资源（CSS、图片、字体）缓存的最大字节数，0 表示不缓存、由 Chromium 自行下载 */
+    public static final long ASSET_CACHE_BYTES = longValue("muppet.asset.cacheBytes", 64L * 1024 * 1024);
+    /** 下载远程资源的超时时间（毫秒） */
+    public static final long ASSET_TIMEOUT_MS = longValue("muppet.asset.timeoutMs", 10_000L);
+
+    private static String stringValue(String key, String defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return value.trim();
+    }
+
+    private static boolean booleanValue(String key, boolean defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return Boolean.parseBoolean(value.trim());
+    }
+
+    /** 不认识的取值记录警告并使用默认值，避免参数写错导致启动失败 */
+    private static <E extends Enum<E>> E enumValue(String key, E defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Enum.valueOf(defaultValue.getDeclaringClass(), value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            log.warn("Unknown {}={}, using {}", key, value, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    private static int intValue(String key, int defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static long longValue(String key, long defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.xuesinuo.muppet.config.exceptions;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+
+@RequiredArgsConstructor
+@Getter
+@Setter
+public class BusyException extends RuntimeException {
+    private final String message;
+}
@@ -0,0 +1,155 @@
+package com.xuesinuo.muppet.job;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.Setter;
+
+/**
+ * 打印任务
+ */
+@Data
+public class PrintJob {
+
+    /**
+     * 渲染逻辑，返回 PDF 字节数组
+     */
+    @FunctionalInterface
+    public interface Renderer {
+        byte[] render() throws Exception;
+    }
+
+    /**
+     * 批量渲染逻辑，返回多个 PDF，送打印机时依次打印
+     */
+    @FunctionalInterface
+    public interface BatchRenderer {
+        List<byte[]> render() throws Exception;
+    }
+
+    /** 任务ID */
+    private final String jobId;
+    /** 目标打印机名称或ID；提交到打印机组时为分配到的成员 */
+    @Setter(AccessLevel.NONE)
+    private volatile String printerNameOrId;
+    /** 提交时指定的打印机组，未使用组时为 null */
+    @Setter(AccessLevel.NONE)
+    private volatile String printerGroup;
+    /** 当前状态 */
+    private volatile PrintJobState state = PrintJobState.QUEUED;
+    /** 失败原因 */
+    private volatile String error;
+    /** 提交时间 */
+    private final long createdAt = System.currentTimeMillis();
+    /** 开始渲染时间 */
+    private volatile Long renderStartAt;
+    /** 渲染完成时间 */
+    private volatile Long renderedAt;
+    /** 开始送打印机时间 */
+    private volatile Long spoolStartAt;
+    /** 结束时间（完成或失败） */
+    private volatile Long finishedAt;
+
+    /** 文档数（渲染完成后可知） */
+    private volatile int documentCount;
+    /** 文档为按打印机分辨率截图的位图（PNG），而不是 PDF */
+    private boolean raster;
+
+    /** 渲染逻辑，已提供 PDF 的任务为 null */
+    @JsonIgnore
+    private final BatchRenderer renderer;
+    /** PDF 数据，送打印机后释放 */
+    @JsonIgnore
+    private volatile List<byte[]> documents;
+    /** 上传到临时文件的 PDF，送打印机时从文件读取，任务结束后删除 */
+    @JsonIgnore
+    private final Path documentFile;
+    /** 渲染失败的原因，由送打印机阶段结束任务时使用 */
+    @JsonIgnore
+    private volatile Throwable renderError;
+    /** 任务结束时完成 */
+    @JsonIgnore
+    private final CompletableFuture<PrintJob> future = new CompletableFuture<>();
+
+    private PrintJob(String printerNameOrId, BatchRenderer renderer, List<byte[]> documents, Path documentFile) {
+        this.jobId = UUID.randomUUID().toString();
+        this.printerNameOrId = printerNameOrId;
+        this.renderer = renderer;
+        this.documentFile = documentFile;
+        setDocuments(documents);
+        if (documentFile != null) {
+            this.documentCount = 1;
+        }
+    }
+
+    /**
+     * 需要渲染的任务
+     */
+    public static PrintJob ofRender(String printerNameOrId, Renderer renderer) {
+        return new PrintJob(printerNameOrId, () -> List.of(renderer.render()), null, null);
+    }
+
+    /**
+     * 需要渲染多个文档的任务（批量打印）
+     */
+    public static PrintJob ofBatch(String printerNameOrId, BatchRenderer renderer) {
+        return new PrintJob(printerNameOrId, renderer, null, null);
+    }
+
+    /**
+     * 已有 PDF 的任务，直接送打印机
+     */
+    public static PrintJob ofPdf(String printerNameOrId, byte[] pdfData) {
+        return new PrintJob(printerNameOrId, null, List.of(pdfData), null);
+    }
+
+    /**
+     * 已有 PDF 文件的任务（大文件上传），直接送打印机，任务结束后删除该文件
+     */
+    public static PrintJob ofPdfFile(String printerNameOrId, Path pdfFile) {
+        return new PrintJob(printerNameOrId, null, null, pdfFile);
+    }
+
+    /** 设置文档，同时记录文档数 */
+    public void setDocuments(List<byte[]> documents) {
+        this.documents = documents;
+        if (documents != null) {
+            this.documentCount = documents.size();
+        }
+    }
+
+    /**
+     * 分配到打印机组的成员
+     */
+    void assignPrinter(String printerGroup, String printerNameOrId) {
+        this.printerGroup = printerGroup;
+        this.printerNameOrId = printerNameOrId;
+    }
+
+    /** 是否已结束 */
+    @JsonIgnore
+    public boolean isFinished() {
+        return state == PrintJobState.DONE || state == PrintJobState.FAILED;
+    }
+
+    /**
+     * 切换状态并记录时间
+     */
+    void moveTo(PrintJobState state) {
+        long now = System.currentTimeMillis();
+        switch (state) {
+            case RENDERING -> renderStartAt = now;
+            case RENDERED -> renderedAt = now;
+            case SPOOLING -> spoolStartAt = now;
+            case DONE, FAILED -> finishedAt = now;
+            default -> {}
+        }
+        this.state = state;
+    }
+}
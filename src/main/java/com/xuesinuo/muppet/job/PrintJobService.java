@@ -0,0 +1,489 @@
+package com.xuesinuo.muppet.job;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.stereotype.Component;
+
+import com.xuesinuo.muppet.config.MuppetConfig;
+import com.xuesinuo.muppet.config.exceptions.BusyException;
+import com.xuesinuo.muppet.config.exceptions.ParamException;
+import com.xuesinuo.muppet.config.exceptions.ServiceException;
+import com.xuesinuo.muppet.tool.BlockingThreads;
+import com.xuesinuo.muppet.tool.BrowserPool;
+import com.xuesinuo.muppet.tool.FontRegistry;
+import com.xuesinuo.muppet.tool.PrinterGroups;
+import com.xuesinuo.muppet.tool.PrinterRegistry;
+import com.xuesinuo.muppet.tool.PrinterUtil;
+import com.xuesinuo.muppet.tool.RemoteAssets;
+import com.xuesinuo.muppet.tool.RenderCache;
+import com.xuesinuo.muppet.vertx.WorkerPools;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.Json;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 打印任务队列
+ *
+ * 两段流水线：渲染阶段（所有打印机共用的渲染线程池）生成 PDF，送打印机阶段（每台打印机一条单线程通道）按提交顺序依次打印，
+ * 排队中已渲染完成的任务合并为一个打印任务提交。
+ * 一台慢速打印机只会堵住自己的通道，不影响其他打印机的渲染；通道内排队的任务数有上限，超出时拒绝新任务（BusyException）。
+ * 提交到打印机组的任务分配给组内排队最少的打印机。不存在的打印机在提交时即被拒绝，不会为其创建通道。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PrintJobService {
+
+    /**
+     * 流水线统计
+     */
+    @AllArgsConstructor
+    @Data
+    public static class PipelineStats {
+        public StageMetrics.Snapshot render; // 渲染阶段
+        public StageMetrics.Snapshot spool; // 送打印机阶段
+        public List<LaneStats> lanes; // 各打印机通道
+        public BrowserPool.PoolStats browserPool; // 浏览器池
+        public RenderCache.CacheStats renderCache; // 渲染缓存命中情况
+        public RemoteAssets.AssetStats remoteAssets; // 远程资源缓存命中情况
+        public FontRegistry.FontStats fonts; // 内置字体
+        public List<WorkerPools.PoolStats> workers; // 接口阻塞任务线程池
+    }
+
+    /**
+     * 打印机通道统计
+     */
+    @AllArgsConstructor
+    @Data
+    public static class LaneStats {
+        public String printerNameOrId; // 打印机
+        public int pending; // 未结束的任务数
+        public int queueLimit; // 排队上限
+    }
+
+    /** 任务状态变化的事件总线地址，消息为任务的 JSON，消息头 jobId 为任务ID */
+    public static final String EVENT_ADDRESS = "muppet.print.job";
+
+    private final Vertx vertx;
+    private final WorkerPools workerPools;
+
+    private final Map<String, PrintJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, PrinterLane> lanes = new ConcurrentHashMap<>();
+    /** 打印机组内负载相同时轮流选择 */
+    private final AtomicInteger groupCursor = new AtomicInteger();
+    private final StageMetrics renderMetrics = new StageMetrics("render");
+    private final StageMetrics spoolMetrics = new StageMetrics("spool");
+    private ExecutorService renderPool;
+    private long cleanupTimerId;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        int threads = Math.max(1, MuppetConfig.RENDER_THREADS);
+        renderPool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "muppet-render-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        cleanupTimerId = vertx.setPeriodic(60_000, id -> evictFinished());
+    }
+
+    @PreDestroy
+    public void stop() {
+        vertx.cancelTimer(cleanupTimerId);
+        renderPool.shutdown();
+        lanes.values().forEach(PrinterLane::shutdown);
+        lanes.clear();
+    }
+
+    /**
+     * 提交任务，立即返回，不等待打印完成
+     *
+     * @throws BusyException    打印机通道已满
+     * @throws ServiceException 打印机不存在或不接受任务
+     */
+    public PrintJob submit(PrintJob job) {
+        return submitAll(List.of(job)).get(0);
+    }
+
+    /**
+     * 一次提交多个任务，要么全部受理，要么全部拒绝：先为每个任务占用排队名额，任一任务被拒绝时释放已占用的名额，
+     * 调用方重试时不会重复打印已受理的任务
+     *
+     * @throws BusyException    打印机通道已满
+     * @throws ServiceException 打印机不存在或不接受任务
+     */
+    public List<PrintJob> submitAll(List<PrintJob> batch) {
+        List<PrinterLane> reserved = new ArrayList<>();
+        try {
+            for (PrintJob job : batch) {
+                reserved.add(reserve(job));
+            }
+        } catch (RuntimeException e) {
+            reserved.forEach(PrinterLane::release);
+            batch.forEach(PrintJobService::deleteDocumentFile);
+            throw e;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            PrintJob job = batch.get(i);
+            PrinterLane lane = reserved.get(i);
+            jobs.put(job.getJobId(), job);
+            PrinterGroups.PrinterGroup group = PrinterGroups.get(job.getPrinterNameOrId());
+            if (group != null) {
+                job.assignPrinter(group.getName(), lane.printerNameOrId);
+            }
+            publish(job);
+            lane.enqueue(job);
+        }
+        return batch;
+    }
+
+    /** 为任务占用打印机（或打印机组成员）通道的排队名额 */
+    private PrinterLane reserve(PrintJob job) {
+        String printerNameOrId = job.getPrinterNameOrId();
+        if (printerNameOrId == null || printerNameOrId.isBlank()) {
+            throw new ParamException("must provide: printerNameOrId");
+        }
+        PrinterGroups.PrinterGroup group = PrinterGroups.get(printerNameOrId);
+        return group == null ? reserve(printerNameOrId) : reserve(group);
+    }
+
+    /** 占用打印机通道的排队名额 */
+    private PrinterLane reserve(String printerNameOrId) {
+        // 不存在的打印机（例如名称写错）直接拒绝，不为其创建通道
+        if (!PrinterRegistry.isKnown(printerNameOrId)) {
+            throw new ServiceException("Printer not found: " + printerNameOrId);
+        }
+        // 打印机已停止接受任务时直接拒绝，不占用渲染和送打印机线程
+        if (!PrinterRegistry.isAcceptingJobs(printerNameOrId)) {
+            throw new ServiceException("Printer is not accepting jobs: " + printerNameOrId);
+        }
+        PrinterLane lane = lane(printerNameOrId);
+        if (!lane.tryReserve()) {
+            throw new BusyException("Printer queue is full: " + printerNameOrId);
+        }
+        return lane;
+    }
+
+    /**
+     * 在打印机组中选择排队最少的成员（本服务的通道中未结束的任务 + 打印机自身队列中的任务），相同时轮流选择
+     */
+    private PrinterLane reserve(PrinterGroups.PrinterGroup group) {
+        List<String> members = group.getMembers();
+        int offset = Math.floorMod(groupCursor.getAndIncrement(), members.size());
+        List<String> candidates = new ArrayList<>();
+        for (int i = 0; i < members.size(); i++) {
+            String member = members.get((offset + i) % members.size());
+            if (PrinterRegistry.isKnown(member) && PrinterRegistry.isAcceptingJobs(member)) {
+                candidates.add(member);
+            }
+        }
+        if (candidates.isEmpty()) {
+            throw new ServiceException("No printer in group is accepting jobs: " + group.getName());
+        }
+        candidates.sort(Comparator.comparingInt(
+                member -> lane(member).pending.get() + PrinterRegistry.queuedJobCount(member)));
+        for (String member : candidates) {
+            PrinterLane lane = lane(member);
+            if (lane.tryReserve()) {
+                return lane;
+            }
+        }
+        throw new BusyException("All printer queues are full in group: " + group.getName());
+    }
+
+    private PrinterLane lane(String printerNameOrId) {
+        return lanes.computeIfAbsent(printerNameOrId.trim().toLowerCase(Locale.ROOT),
+                key -> new PrinterLane(printerNameOrId.trim()));
+    }
+
+    /**
+     * 查询任务
+     */
+    public PrintJob get(String jobId) {
+        return jobId == null ? null : jobs.get(jobId);
+    }
+
+    /**
+     * 流水线各阶段的吞吐量和队列深度
+     */
+    public PipelineStats stats() {
+        List<LaneStats> laneStats = new ArrayList<>();
+        for (PrinterLane lane : lanes.values()) {
+            laneStats.add(new LaneStats(lane.printerNameOrId, lane.pending.get(), MuppetConfig.JOB_QUEUE_DEPTH));
+        }
+        return new PipelineStats(renderMetrics.snapshot(), spoolMetrics.snapshot(), laneStats, BrowserPool.stats(),
+                RenderCache.stats(), RemoteAssets.stats(), FontRegistry.stats(),
+                workerPools.stats());
+    }
+
+    private void evictFinished() {
+        long expired = System.currentTimeMillis() - MuppetConfig.JOB_RETENTION_MS;
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt() < expired);
+    }
+
+    /** 删除任务的临时文件 */
+    private static void deleteDocumentFile(PrintJob job) {
+        if (job.getDocumentFile() != null) {
+            try {
+                Files.deleteIfExists(job.getDocumentFile());
+            } catch (IOException e) {
+                log.warn("Failed to delete {}: {}", job.getDocumentFile(), e.toString());
+            }
+        }
+    }
+
+    /** 切换状态并推送事件 */
+    private void transition(PrintJob job, PrintJobState state) {
+        job.moveTo(state);
+        publish(job);
+    }
+
+    private void publish(PrintJob job) {
+        vertx.eventBus().publish(EVENT_ADDRESS, Json.encode(job), new DeliveryOptions().addHeader("jobId", job.getJobId()));
+    }
+
+    private void complete(PrintJob job) {
+        transition(job, PrintJobState.DONE);
+        log.info("Print job {} done on {}", job.getJobId(), job.getPrinterNameOrId());
+        job.getFuture().complete(job);
+    }
+
+    private void fail(PrintJob job, Throwable error) {
+        if (error instanceof ServiceException || error instanceof ParamException || error instanceof BusyException) {
+            job.setError(error.getMessage());
+            log.warn("Print job {} failed: {}", job.getJobId(), error.getMessage());
+        } else {
+            job.setError("System error: " + error);
+            log.error("Print job {} failed", job.getJobId(), error);
+        }
+        transition(job, PrintJobState.FAILED);
+        job.getFuture().completeExceptionally(error);
+    }
+
+    /** 渲染阶段，成功返回 true */
+    private boolean render(PrintJob job) {
+        renderMetrics.started();
+        transition(job, PrintJobState.RENDERING);
+        long start = System.currentTimeMillis();
+        try {
+            job.setDocuments(job.getRenderer().render());
+            transition(job, PrintJobState.RENDERED);
+            renderMetrics.finished(System.currentTimeMillis() - start, true);
+            return true;
+        } catch (Throwable e) {
+            renderMetrics.finished(System.currentTimeMillis() - start, false);
+            job.setRenderError(e);
+            return false;
+        }
+    }
+
+    /**
+     * 单台打印机的送打印机通道
+     *
+     * 送打印机时会把排在后面、已渲染完成的任务一起拼接为一个文档，以一个打印任务提交（Windows 上每个后台打印任务的开销很大），
+     * 每个源任务仍单独报告完成或失败。
+     */
+    private class PrinterLane {
+        private final String printerNameOrId;
+        private final AtomicInteger pending = new AtomicInteger();
+        private final ThreadPoolExecutor spoolExecutor;
+        /** 等待送打印机的任务，只有送打印机线程取出 */
+        private final LinkedBlockingDeque<SpoolEntry> spoolQueue = new LinkedBlockingDeque<>();
+
+        PrinterLane(String printerNameOrId) {
+            this.printerNameOrId = printerNameOrId;
+            this.spoolExecutor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    BlockingThreads.factory("muppet-spool-" + printerNameOrId, false));
+            this.spoolExecutor.allowCoreThreadTimeOut(true);
+        }
+
+        /** 占用一个排队名额，已满时返回 false */
+        boolean tryReserve() {
+            while (true) {
+                int current = pending.get();
+                if (current >= MuppetConfig.JOB_QUEUE_DEPTH) {
+                    return false;
+                }
+                if (pending.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /** 释放未使用的排队名额 */
+        void release() {
+            pending.decrementAndGet();
+        }
+
+        /** 渲染交给共用线程池并行执行，送打印机按提交顺序排队，等待各自的渲染结果 */
+        void enqueue(PrintJob job) {
+            CompletableFuture<Boolean> rendered;
+            if (job.getRenderer() == null) {
+                transition(job, PrintJobState.RENDERED);
+                rendered = CompletableFuture.completedFuture(true);
+            } else {
+                renderMetrics.queued();
+                rendered = CompletableFuture.supplyAsync(() -> render(job), renderPool);
+            }
+            spoolMetrics.queued();
+            spoolQueue.add(new SpoolEntry(job, rendered));
+            // 每个任务提交一次，已被前面的批次合并时为空操作
+            spoolExecutor.execute(this::spoolNext);
+        }
+
+        private void spoolNext() {
+            SpoolEntry head = spoolQueue.poll();
+            if (head == null || !head.rendered.join()) {
+                if (head != null) {
+                    skip(head.job);
+                }
+                return;
+            }
+            List<PrintJob> batchJobs = new ArrayList<>();
+            long start = System.currentTimeMillis();
+            try (PrinterUtil.SpoolBatch batch = head.job.isRaster()
+                    ? new PrinterUtil.RasterBatch()
+                    : new PrinterUtil.PdfBatch()) {
+                addToBatch(batch, head.job, batchJobs);
+                long deadline = start + MuppetConfig.SPOOL_COALESCE_MS;
+                while (!batchJobs.isEmpty() && batch.getPageCount() < MuppetConfig.SPOOL_COALESCE_PAGES) {
+                    SpoolEntry next = nextRendered(deadline);
+                    if (next == null) {
+                        break;
+                    }
+                    if (!canCoalesce(head.job, next.job)) {
+                        spoolQueue.offerFirst(next);
+                        break;
+                    }
+                    if (next.rendered.join()) {
+                        addToBatch(batch, next.job, batchJobs);
+                    } else {
+                        skip(next.job);
+                    }
+                }
+                if (batchJobs.isEmpty()) {
+                    return;
+                }
+                if (!PrinterRegistry.isAcceptingJobs(printerNameOrId)) {
+                    throw new ServiceException("Printer is not accepting jobs: " + printerNameOrId);
+                }
+                if (batchJobs.size() > 1) {
+                    log.info("Coalesced {} jobs ({} pages) into one print job on {}", batchJobs.size(),
+                            batch.getPageCount(), printerNameOrId);
+                }
+                batch.print(printerNameOrId);
+                long millis = System.currentTimeMillis() - start;
+                for (PrintJob job : batchJobs) {
+                    spoolMetrics.finished(millis, true);
+                    finish(job, null);
+                }
+            } catch (Throwable e) {
+                long millis = System.currentTimeMillis() - start;
+                for (PrintJob job : batchJobs) {
+                    spoolMetrics.finished(millis, false);
+                    finish(job, e);
+                }
+            }
+        }
+
+        /** 位图和 PDF 不能合并；上传的大文件单独打印，避免拼接时复制整个文档 */
+        private boolean canCoalesce(PrintJob head, PrintJob next) {
+            return head.isRaster() == next.isRaster() && head.getDocumentFile() == null && next.getDocumentFile() == null;
+        }
+
+        /** 取下一个已渲染完成的任务，最多等到 deadline；未按时完成的放回队首 */
+        private SpoolEntry nextRendered(long deadline) throws InterruptedException {
+            long remaining = deadline - System.currentTimeMillis();
+            SpoolEntry next = remaining > 0 ? spoolQueue.pollFirst(remaining, TimeUnit.MILLISECONDS) : spoolQueue.pollFirst();
+            if (next == null) {
+                return null;
+            }
+            if (!next.rendered.isDone()) {
+                remaining = deadline - System.currentTimeMillis();
+                try {
+                    next.rendered.get(Math.max(0, remaining), TimeUnit.MILLISECONDS);
+                } catch (TimeoutException | ExecutionException e) {
+                    spoolQueue.offerFirst(next);
+                    return null;
+                } catch (InterruptedException e) {
+                    // 放回队首，否则该任务既不在队列也不在批次中，永远不会结束
+                    spoolQueue.offerFirst(next);
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+            return next;
+        }
+
+        /** 任务的文档拼接到批次中，文档无法解析时只有该任务失败 */
+        private void addToBatch(PrinterUtil.SpoolBatch batch, PrintJob job, List<PrintJob> batchJobs) {
+            spoolMetrics.started();
+            transition(job, PrintJobState.SPOOLING);
+            try {
+                if (job.getDocumentFile() != null) {
+                    batch.append(job.getDocumentFile());
+                } else {
+                    batch.append(job.getDocuments());
+                }
+                batchJobs.add(job);
+            } catch (IOException e) {
+                spoolMetrics.finished(0, false);
+                finish(job, new ServiceException("Invalid document: " + e.getMessage()));
+            } catch (RuntimeException e) {
+                spoolMetrics.finished(0, false);
+                finish(job, e);
+            }
+        }
+
+        /** 渲染失败的任务，不送打印机 */
+        private void skip(PrintJob job) {
+            spoolMetrics.skipped();
+            finish(job, job.getRenderError());
+        }
+
+        private void finish(PrintJob job, Throwable error) {
+            job.setDocuments(null);
+            deleteDocumentFile(job);
+            pending.decrementAndGet();
+            if (error == null) {
+                complete(job);
+            } else {
+                fail(job, error);
+            }
+        }
+
+        void shutdown() {
+            spoolExecutor.shutdown();
+        }
+    }
+
+    @AllArgsConstructor
+    private static class SpoolEntry {
+        private final PrintJob job;
+        private final CompletableFuture<Boolean> rendered;
+    }
+}
@@ -0,0 +1,19 @@
+package com.xuesinuo.muppet.job;
+
+/**
+ * 打印任务状态
+ */
+public enum PrintJobState {
+    /** 排队中 */
+    QUEUED,
+    /** 渲染中 */
+    RENDERING,
+    /** 已渲染，等待送打印机 */
+    RENDERED,
+    /** 送打印机中 */
+    SPOOLING,
+    /** 完成 */
+    DONE,
+    /** 失败 */
+    FAILED,
+}
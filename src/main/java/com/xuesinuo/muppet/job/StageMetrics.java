@@ -0,0 +1,97 @@
+package com.xuesinuo.muppet.job;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 流水线阶段统计：排队数、执行中数、累计完成/失败数、平均耗时、最近一分钟吞吐量
+ */
+public class StageMetrics {
+
+    /**
+     * 统计快照
+     */
+    @AllArgsConstructor
+    @Data
+    public static class Snapshot {
+        public String stage; // 阶段名称
+        public int queued; // 排队中
+        public int active; // 执行中
+        public long completed; // 累计完成
+        public long failed; // 累计失败
+        public long avgMillis; // 平均耗时（毫秒）
+        public long lastMinute; // 最近一分钟完成数
+    }
+
+    private static final int WINDOW_SECONDS = 60;
+
+    private final String stage;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong totalMillis = new AtomicLong();
+    /** 按秒分桶的完成数，环形使用 */
+    private final long[] buckets = new long[WINDOW_SECONDS];
+    private final long[] bucketSeconds = new long[WINDOW_SECONDS];
+
+    public StageMetrics(String stage) {
+        this.stage = stage;
+    }
+
+    /** 任务进入本阶段队列 */
+    public void queued() {
+        queued.incrementAndGet();
+    }
+
+    /** 任务开始执行 */
+    public void started() {
+        queued.decrementAndGet();
+        active.incrementAndGet();
+    }
+
+    /** 任务未执行即离开队列 */
+    public void skipped() {
+        queued.decrementAndGet();
+    }
+
+    /** 任务执行结束 */
+    public void finished(long millis, boolean success) {
+        active.decrementAndGet();
+        if (success) {
+            completed.incrementAndGet();
+            totalMillis.addAndGet(millis);
+            record(System.currentTimeMillis() / 1000);
+        } else {
+            failed.incrementAndGet();
+        }
+    }
+
+    public Snapshot snapshot() {
+        long done = completed.get();
+        return new Snapshot(stage, queued.get(), active.get(), done, failed.get(),
+                done == 0 ? 0 : totalMillis.get() / done, lastMinute(System.currentTimeMillis() / 1000));
+    }
+
+    private synchronized void record(long second) {
+        int index = (int) (second % WINDOW_SECONDS);
+        if (bucketSeconds[index] != second) {
+            bucketSeconds[index] = second;
+            buckets[index] = 0;
+        }
+        buckets[index]++;
+    }
+
+    private synchronized long lastMinute(long nowSecond) {
+        long sum = 0;
+        for (int i = 0; i < WINDOW_SECONDS; i++) {
+            if (nowSecond - bucketSeconds[i] < WINDOW_SECONDS) {
+                sum += buckets[i];
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,61 @@
+package com.xuesinuo.muppet.tool;
+
+import com.xuesinuo.muppet.config.MuppetConfig;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 等待系统 I/O 的阻塞任务（送打印机、查询打印机）使用的线程
+ *
+ * 开启 muppet.virtualThreads 时使用虚拟线程：等待驱动、打印服务期间不占用平台线程，大量打印机、大量在途任务也不需要相应数量的平台线程。
+ * 驱动调用走 JNI 的平台（如 Windows 打印后台）上，虚拟线程在调用期间仍会占住载体线程。
+ * 渲染线程持有 Playwright 连接，始终使用平台线程。
+ */
+public class BlockingThreads {
+
+    /**
+     * 按配置创建线程工厂，线程名为 name 或 name-序号
+     *
+     * @param name     线程名（前缀）
+     * @param numbered 是否在线程名后加序号
+     */
+    public static ThreadFactory factory(String name, boolean numbered) {
+        return factory(name, numbered, MuppetConfig.VIRTUAL_THREADS);
+    }
+
+    /**
+     * 创建线程工厂，平台线程为守护线程
+     */
+    public static ThreadFactory factory(String name, boolean numbered, boolean virtual) {
+        if (virtual) {
+            Thread.Builder.OfVirtual builder = Thread.ofVirtual();
+            return (numbered ? builder.name(name + "-", 1) : builder.name(name)).factory();
+        }
+        AtomicInteger index = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, numbered ? name + "-" + index.incrementAndGet() : name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * 对每个元素执行阻塞操作：虚拟线程模式下并行执行（一个慢的打印机不拖慢其他打印机），否则在当前线程依次执行；全部完成后返回
+     */
+    public static <T> void forEach(String name, List<T> items, Consumer<T> action) {
+        if (!MuppetConfig.VIRTUAL_THREADS || items.size() < 2) {
+            items.forEach(action);
+            return;
+        }
+        try (ExecutorService executor = Executors.newThreadPerTaskExecutor(factory(name, true, true))) {
+            for (T item : items) {
+                executor.execute(() -> action.accept(item));
+            }
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package com.xuesinuo.muppet.tool;
+
+import com.microsoft.playwright.Browser;
+import com.microsoft.playwright.BrowserContext;
+import com.microsoft.playwright.BrowserType;
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.Playwright;
+import com.xuesinuo.muppet.config.MuppetConfig;
+import com.xuesinuo.muppet.config.exceptions.ServiceException;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Chromium浏览器池
+ *
+ * 长期持有若干 Playwright + Browser 实例，每个任务借出一个浏览器并在独立的 BrowserContext 中渲染，避免每个任务都冷启动浏览器。
+ *
+ * Playwright 对象不是线程安全的，借出期间浏览器只归借用者一个线程使用，归还后才能被其他线程借用。
+ */
+@Slf4j
+public class BrowserPool {
+
+    /**
+     * 浏览器池状态
+     */
+    @AllArgsConstructor
+    @Data
+    public static class PoolStats {
+        public int poolSize; // 池容量
+        public int idle; // 空闲浏览器数
+        public int inUse; // 借出中的浏览器数
+        public long launched; // 累计启动次数
+        public long recycled; // 累计回收次数
+    }
+
+    /**
+     * 借出的浏览器，使用完毕必须 close 归还
+     */
+    public static class Lease implements AutoCloseable {
+        private final PooledBrowser pooled;
+        private boolean closed = false;
+
+        private Lease(PooledBrowser pooled) {
+            this.pooled = pooled;
+        }
+
+        /** 浏览器实例 */
+        public Browser getBrowser() {
+            return pooled.browser;
+        }
+
+        /** 创建一个隔离的上下文，调用方负责关闭 */
+        public BrowserContext newContext() {
+            return pooled.browser.newContext();
+        }
+
+        /** 创建一个隔离的上下文，调用方负责关闭 */
+        public BrowserContext newContext(Browser.NewContextOptions options) {
+            return pooled.browser.newContext(options);
+        }
+
+        /**
+         * 获取本浏览器上常驻的预热页面，不存在或版本过期时在新的上下文中创建并调用 loader 加载
+         *
+         * @param key     页面标识，例如模板ID
+         * @param version 页面版本，与已加载的版本不同时重新加载
+         * @param loader  首次加载页面的逻辑
+         */
+        public Page warmPage(String key, long version, Consumer<Page> loader) {
+            return warmPage(key, version, null, loader);
+        }
+
+        /**
+         * 获取本浏览器上常驻的预热页面，新建时使用指定的上下文参数（例如位图模式的设备像素比）
+         */
+        public Page warmPage(String key, long version, Browser.NewContextOptions options, Consumer<Page> loader) {
+            WarmPage warm = pooled.warmPages.get(key);
+            if (warm != null && warm.version == version && !warm.page.isClosed()) {
+                return warm.page;
+            }
+            dropWarmPage(key);
+            BrowserContext context = pooled.browser.newContext(options);
+            try {
+                Page page = context.newPage();
+                loader.accept(page);
+                pooled.warmPages.put(key, new WarmPage(version, context, page));
+                return page;
+            } catch (RuntimeException e) {
+                closeQuietly(context);
+                throw e;
+            }
+        }
+
+        /** 丢弃预热页面，下次使用时重新加载 */
+        public void dropWarmPage(String key) {
+            WarmPage warm = pooled.warmPages.remove(key);
+            if (warm != null) {
+                closeQuietly(warm.context);
+            }
+        }
+
+        /** 归还浏览器 */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            giveBack(pooled, true);
+        }
+    }
+
+    private static class PooledBrowser {
+        final int id;
+        final Playwright playwright;
+        final Browser browser;
+        final Map<String, WarmPage> warmPages = new HashMap<>();
+        int jobs = 0;
+
+        PooledBrowser(int id, Playwright playwright, Browser browser) {
+            this.id = id;
+            this.playwright = playwright;
+            this.browser = browser;
+        }
+    }
+
+    @AllArgsConstructor
+    private static class WarmPage {
+        final long version;
+        final BrowserContext context;
+        final Page page;
+    }
+
+    private static final BlockingQueue<PooledBrowser> idle = new LinkedBlockingQueue<>();
+    private static final Semaphore permits = new Semaphore(Math.max(1, MuppetConfig.BROWSER_POOL_SIZE));
+    private static final AtomicInteger idSequence = new AtomicInteger();
+    private static final AtomicLong launched = new AtomicLong();
+    private static final AtomicLong recycled = new AtomicLong();
+    private static volatile boolean shutdown = false;
+
+    static {
+        if (MuppetConfig.BROWSER_HEALTH_CHECK_MS > 0) {
+            ScheduledExecutorService healthChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "muppet-browser-health");
+                thread.setDaemon(true);
+                return thread;
+            });
+            healthChecker.scheduleWithFixedDelay(BrowserPool::checkIdle,
+                    MuppetConfig.BROWSER_HEALTH_CHECK_MS, MuppetConfig.BROWSER_HEALTH_CHECK_MS, TimeUnit.MILLISECONDS);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(BrowserPool::shutdown, "muppet-browser-shutdown"));
+    }
+
+    /**
+     * 借用一个浏览器，池满时等待，超时抛出 ServiceException
+     */
+    public static Lease borrow() {
+        if (shutdown) {
+            throw new ServiceException("Browser pool is shut down");
+        }
+        try {
+            if (!permits.tryAcquire(MuppetConfig.BROWSER_BORROW_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                throw new ServiceException("Browser pool busy, please retry later");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceException("Interrupted while waiting for browser");
+        }
+        try {
+            PooledBrowser pooled = idle.poll();
+            while (pooled != null && !isHealthy(pooled)) {
+                dispose(pooled);
+                pooled = idle.poll();
+            }
+            if (pooled == null) {
+                pooled = launch();
+            }
+            return new Lease(pooled);
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 预热浏览器，使首个任务无需等待冷启动
+     */
+    public static void warmUp() {
+        int count = Math.min(MuppetConfig.BROWSER_WARM_UP, MuppetConfig.BROWSER_POOL_SIZE) - idle.size();
+        List<Lease> leases = new ArrayList<>();
+        try {
+            for (int i = 0; i < count; i++) {
+                leases.add(borrow());
+            }
+            // 在预热阶段检查内置字体，不占用任务借用浏览器的时间
+            if (!leases.isEmpty()) {
+                try {
+                    FontRegistry.verify(leases.get(0));
+                } catch (RuntimeException e) {
+                    log.warn("Font check failed: {}", e.toString());
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Browser warm up failed: {}", e.toString());
+        } finally {
+            for (Lease lease : leases) {
+                giveBack(lease.pooled, false);
+            }
+        }
+        log.info("Browser pool warmed up, idle: {}", idle.size());
+    }
+
+    /**
+     * 池状态
+     */
+    public static PoolStats stats() {
+        int size = Math.max(1, MuppetConfig.BROWSER_POOL_SIZE);
+        return new PoolStats(size, idle.size(), size - permits.availablePermits(), launched.get(), recycled.get());
+    }
+
+    /**
+     * 关闭所有空闲浏览器，借出中的浏览器在归还时关闭
+     */
+    public static void shutdown() {
+        shutdown = true;
+        PooledBrowser pooled;
+        while ((pooled = idle.poll()) != null) {
+            dispose(pooled);
+        }
+    }
+
+    private static PooledBrowser launch() {
+        Playwright playwright = Playwright.create();
+        try {
+            BrowserType.LaunchOptions options = new BrowserType.LaunchOptions().setHeadless(true);
+            Map<String, String> env = FontRegistry.browserEnv();
+            if (env != null) {
+                options.setEnv(env);
+            }
+            Browser browser = playwright.chromium().launch(options);
+            PooledBrowser pooled = new PooledBrowser(idSequence.incrementAndGet(), playwright, browser);
+            launched.incrementAndGet();
+            log.info("Browser #{} launched", pooled.id);
+            return pooled;
+        } catch (RuntimeException e) {
+            playwright.close();
+            throw e;
+        }
+    }
+
+    private static void giveBack(PooledBrowser pooled, boolean countJob) {
+        try {
+            if (countJob) {
+                pooled.jobs++;
+            }
+            if (shutdown || pooled.jobs >= MuppetConfig.BROWSER_MAX_JOBS || !isHealthy(pooled)) {
+                log.info("Browser #{} recycled after {} job(s)", pooled.id, pooled.jobs);
+                recycled.incrementAndGet();
+                dispose(pooled);
+            } else {
+                idle.offer(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private static boolean isHealthy(PooledBrowser pooled) {
+        try {
+            return pooled.browser.isConnected();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /** 对空闲浏览器做一次往返检查，剔除已失联的实例 */
+    private static void checkIdle() {
+        int count = idle.size();
+        for (int i = 0; i < count && !shutdown; i++) {
+            if (!permits.tryAcquire()) {
+                return;
+            }
+            PooledBrowser pooled = idle.poll();
+            if (pooled == null) {
+                permits.release();
+                return;
+            }
+            boolean healthy;
+            try {
+                pooled.browser.newContext().close();
+                healthy = isHealthy(pooled);
+            } catch (Exception e) {
+                healthy = false;
+            }
+            if (healthy) {
+                idle.offer(pooled);
+            } else {
+                log.warn("Browser #{} failed health check", pooled.id);
+                recycled.incrementAndGet();
+                dispose(pooled);
+            }
+            permits.release();
+        }
+    }
+
+    private static void closeQuietly(BrowserContext context) {
+        try {
+            context.close();
+        } catch (Exception ignored) {}
+    }
+
+    private static void dispose(PooledBrowser pooled) {
+        try {
+            pooled.browser.close();
+        } catch (Exception ignored) {}
+        try {
+            pooled.playwright.close();
+        } catch (Exception ignored) {}
+    }
+}
@@ -0,0 +1,87 @@
+package com.xuesinuo.muppet.tool;
+
+import com.microsoft.playwright.Browser;
+import com.microsoft.playwright.BrowserContext;
+import com.microsoft.playwright.BrowserType;
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.Playwright;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+
+/**
+ * 内置字体作为本机字体的效果：使用 HarmonyOS_Sans 字体的 100x150mm 标签，每张标签一个新的上下文（与打印任务相同），
+ * 对比默认启动的浏览器（local() 匹配不到，每个上下文加载网页字体）与带 FontRegistry 环境变量启动的浏览器（Linux 上使用本机字体）
+ * 的首次绘制时间（first-contentful-paint）和到字体全部就绪的时间
+ *
+ * 参数：标签数
+ */
+@Slf4j
+public class FontPaintBenchmarkExample {
+    public static void main(String[] args) throws Exception {
+        int labels = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        String html = """
+                <!DOCTYPE html>
+                <html>
+                <head>
+                  <meta charset="utf-8" />
+                  <link rel="stylesheet" href="css/print.css" />
+                  <style>
+                    body { margin: 0; background: #FFF; }
+                    .label { width: 100mm; height: 150mm; box-sizing: border-box; border: 1mm solid #000; padding: 4mm; }
+                    h1 { font-family: 'HarmonyOS_Sans'; font-weight: 500; font-size: 9mm; margin: 0 0 4mm; }
+                    .compact { font-family: 'HarmonyOS_Sans_Condensed'; font-size: 5mm; }
+                  </style>
+                </head>
+                <body>
+                  <div class="label">
+                    <h1>MUPPET PRINT</h1>
+                    <div class="compact" style="font-weight: 700;">SHIP TO: 上海市浦东新区 100 号</div>
+                    <div class="compact" style="font-weight: 400;">ORDER: 2024-000123456</div>
+                  </div>
+                </body>
+                </html>
+                """;
+
+        run("web fonts", labels, html, null);
+        Map<String, String> env = FontRegistry.browserEnv();
+        if (env == null) {
+            log.info("Local fonts not available on this system (Linux only, muppet.font.local), skipped");
+            return;
+        }
+        run("local fonts", labels, html, env);
+        log.info("fonts: {}", FontRegistry.stats());
+    }
+
+    private static void run(String name, int labels, String html, Map<String, String> env) {
+        BrowserType.LaunchOptions options = new BrowserType.LaunchOptions().setHeadless(true);
+        if (env != null) {
+            options.setEnv(env);
+        }
+        try (Playwright playwright = Playwright.create(); Browser browser = playwright.chromium().launch(options)) {
+            double firstPaintTotal = 0;
+            long readyTotal = 0;
+            for (int i = 0; i < labels; i++) {
+                try (BrowserContext context = browser.newContext()) {
+                    Page page = context.newPage();
+                    PrintAssets.route(page, PrintAssets.jobFiles(html, null));
+                    long start = System.nanoTime();
+                    page.navigate(PrintAssets.BASE_URL + "index.html");
+                    page.waitForLoadState();
+                    page.evaluate("() => document.fonts.ready.then(() => true)");
+                    long readyMicros = (System.nanoTime() - start) / 1000;
+                    Number firstPaint = (Number) page.evaluate(
+                            "() => performance.getEntriesByName('first-contentful-paint').map(e => e.startTime)[0] || 0");
+                    if (i == 0) {
+                        log.info("{}: first label paint {} ms, fonts ready {} ms", name, firstPaint, readyMicros / 1000.0);
+                    }
+                    firstPaintTotal += firstPaint.doubleValue();
+                    readyTotal += readyMicros;
+                }
+            }
+            log.info("{}: {} labels, avg first paint {} ms, avg fonts ready {} ms", name, labels,
+                    firstPaintTotal / labels, readyTotal / labels / 1000.0);
+        }
+    }
+}
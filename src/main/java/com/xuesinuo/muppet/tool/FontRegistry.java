@@ -0,0 +1,234 @@
+package com.xuesinuo.muppet.tool;
+
+import com.microsoft.playwright.BrowserContext;
+import com.microsoft.playwright.Page;
+import com.xuesinuo.muppet.config.MuppetConfig;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 内置字体注册表
+ *
+ * 内置字体（imports/font 下的 HarmonyOS_Sans_*.ttf）由 css/print.css 的 @font-face 声明，模板引用 css/print.css 后按字体族名使用。
+ * 字体文件在启动时一次读入内存，之后所有任务都从内存提供，不再读文件。
+ * 浏览器池预热时在一个临时上下文中通过 document.fonts 加载全部字体并确认，字体损坏或 Chromium 无法解析时在预热阶段就能发现。
+ *
+ * Chromium 不在浏览器上下文之间共享网页字体，每个任务的上下文都要重新解析。Linux 上启动浏览器时把内置字体写入专用目录，
+ * 通过 FONTCONFIG_FILE 作为本机字体提供给 Chromium，css/print.css 的 @font-face 先用 local() 匹配本机字体，
+ * 每个浏览器进程只解析一次；Windows、MacOS 没有启动时追加字体目录的方式，local() 匹配不到，沿用 url() 网页字体。
+ */
+@Slf4j
+public class FontRegistry {
+
+    /**
+     * 字体（一条 @font-face）
+     */
+    @AllArgsConstructor
+    @Data
+    public static class FontFace {
+        public String family; // 字体族名
+        public String weight; // 字重
+        public String path; // 相对 imports 目录的文件路径
+    }
+
+    /**
+     * 字体统计
+     */
+    @AllArgsConstructor
+    @Data
+    public static class FontStats {
+        public int faces; // 可用字体数
+        public long bytes; // 常驻内存的字体字节数
+        public Boolean verified; // 预热时的字体检查结果，未检查时为 null
+        public List<String> missing; // 检查时未能加载的字体
+        public long verifyMillis; // 字体检查耗时（毫秒）
+        public String localDir; // 作为本机字体提供给 Chromium 的字体目录，未提供时为 null
+    }
+
+    private static final String STYLESHEET = "css/print.css";
+    private static final Pattern FONT_FACE = Pattern.compile("@font-face\\s*\\{([^}]*)}");
+    private static final Pattern FAMILY = Pattern.compile("font-family\\s*:\\s*['\"]?([^;'\"]+)['\"]?\\s*;");
+    private static final Pattern SOURCE = Pattern.compile("url\\(\\s*['\"]?(?:\\.\\./)?([^)'\"]+)['\"]?\\s*\\)");
+    private static final Pattern WEIGHT = Pattern.compile("font-weight\\s*:\\s*([^;]+);");
+
+    private static final List<FontFace> faces = loadFaces();
+    private static volatile Boolean verified;
+    private static volatile List<String> missing = List.of();
+    private static volatile long verifyMillis;
+    private static Path localDir;
+    private static boolean localInstalled;
+
+    /**
+     * 可用的内置字体（文件存在的 @font-face）
+     */
+    public static List<FontFace> faces() {
+        return faces;
+    }
+
+    /**
+     * 在借用的浏览器中检查全部内置字体能否加载（由预热调用，每个进程检查一次），关闭 muppet.font.verify 时不检查
+     */
+    public static void verify(BrowserPool.Lease lease) {
+        if (!MuppetConfig.FONT_VERIFY || faces.isEmpty() || verified != null) {
+            return;
+        }
+        try (BrowserContext context = lease.newContext()) {
+            check(context.newPage());
+        }
+    }
+
+    /**
+     * 启动 Chromium 使用的环境变量：Linux 上（未关闭 muppet.font.local 时）第一次调用把字体文件写入专用目录并生成 fontconfig 配置，
+     * 返回带 FONTCONFIG_FILE 的环境变量；其他系统或写入失败时返回 null，使用默认环境
+     */
+    public static synchronized Map<String, String> browserEnv() {
+        if (!localInstalled) {
+            localInstalled = true;
+            if (MuppetConfig.FONT_LOCAL && !faces.isEmpty()
+                    && System.getProperty("os.name").toLowerCase(Locale.ROOT).contains("linux")) {
+                localDir = installLocal();
+            }
+        }
+        if (localDir == null) {
+            return null;
+        }
+        Map<String, String> env = new HashMap<>(System.getenv());
+        env.put("FONTCONFIG_FILE", localDir.resolve("fonts.conf").toString());
+        return env;
+    }
+
+    public static FontStats stats() {
+        long bytes = 0;
+        for (String path : faces.stream().map(FontFace::getPath).distinct().toList()) {
+            byte[] data = PrintAssets.sharedAsset(path);
+            bytes += data == null ? 0 : data.length;
+        }
+        Path dir;
+        synchronized (FontRegistry.class) {
+            dir = localDir;
+        }
+        return new FontStats(faces.size(), bytes, verified, missing, verifyMillis, dir == null ? null : dir.toString());
+    }
+
+    /**
+     * 打开引用 css/print.css 的页面，逐个加载字体并确认，有字体未能加载时记录警告（任务仍可打印，只是会使用后备字体）
+     */
+    private static void check(Page page) {
+        long start = System.currentTimeMillis();
+        String html = "<!DOCTYPE html><html><head><meta charset=\"utf-8\"><link rel=\"stylesheet\" href=\"" + STYLESHEET
+                + "\"></head><body></body></html>";
+        PrintAssets.route(page, PrintAssets.jobFiles(html, null));
+        page.navigate(PrintAssets.BASE_URL + "index.html");
+        page.waitForLoadState();
+        List<Map<String, String>> specs = faces.stream()
+                .map(face -> Map.of("family", face.getFamily(), "weight", face.getWeight()))
+                .toList();
+        List<?> failed;
+        try {
+            failed = (List<?>) page.evaluate("""
+                    async (faces) => {
+                        const missing = [];
+                        for (const face of faces) {
+                            const loaded = await document.fonts.load(face.weight + ' 16px "' + face.family + '"');
+                            if (loaded.length === 0) {
+                                missing.push(face.family + ' ' + face.weight);
+                            }
+                        }
+                        await document.fonts.ready;
+                        return missing;
+                    }
+                    """, specs);
+        } catch (RuntimeException e) {
+            failed = List.of(e.getMessage());
+        }
+        verifyMillis = System.currentTimeMillis() - start;
+        missing = failed.stream().map(String::valueOf).toList();
+        verified = missing.isEmpty();
+        if (!verified) {
+            log.warn("Fonts failed to load in browser: {}", missing);
+            return;
+        }
+        log.info("{} font face(s) verified in {} ms", faces.size(), verifyMillis);
+    }
+
+    /**
+     * 字体文件写入 临时目录/muppet-fonts（内容不同时覆盖），生成引用系统配置并追加该目录的 fonts.conf，
+     * 用户已设置 FONTCONFIG_FILE 时引用该配置
+     */
+    private static Path installLocal() {
+        Path dir = Path.of(System.getProperty("java.io.tmpdir"), "muppet-fonts");
+        try {
+            Files.createDirectories(dir);
+            for (String path : faces.stream().map(FontFace::getPath).distinct().toList()) {
+                byte[] data = PrintAssets.sharedAsset(path);
+                Path file = dir.resolve(Path.of(path).getFileName().toString());
+                if (!Files.isRegularFile(file) || Files.size(file) != data.length) {
+                    Files.write(file, data);
+                }
+            }
+            String system = System.getenv("FONTCONFIG_FILE");
+            String conf = """
+                    <?xml version="1.0"?>
+                    <!DOCTYPE fontconfig SYSTEM "fonts.dtd">
+                    <fontconfig>
+                      <include ignore_missing="yes">%s</include>
+                      <dir>%s</dir>
+                      <cachedir>%s</cachedir>
+                    </fontconfig>
+                    """.formatted(xml(system == null || system.isBlank() ? "/etc/fonts/fonts.conf" : system),
+                    xml(dir.toAbsolutePath().toString()), xml(dir.resolve("cache").toAbsolutePath().toString()));
+            Files.writeString(dir.resolve("fonts.conf"), conf);
+            log.info("{} font file(s) provided to Chromium as local fonts from {}",
+                    faces.stream().map(FontFace::getPath).distinct().count(), dir);
+            return dir;
+        } catch (IOException e) {
+            log.warn("Local fonts not installed, using web fonts: {}", e.toString());
+            return null;
+        }
+    }
+
+    private static String xml(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    /** 解析 css/print.css 中的 @font-face，只保留文件存在的字体，并把字体文件读入内存 */
+    private static List<FontFace> loadFaces() {
+        byte[] css = PrintAssets.sharedAsset(STYLESHEET);
+        if (css == null) {
+            return List.of();
+        }
+        List<FontFace> list = new ArrayList<>();
+        Matcher block = FONT_FACE.matcher(new String(css, StandardCharsets.UTF_8));
+        while (block.find()) {
+            String body = block.group(1);
+            Matcher family = FAMILY.matcher(body);
+            Matcher source = SOURCE.matcher(body);
+            if (!family.find() || !source.find()) {
+                continue;
+            }
+            Matcher weight = WEIGHT.matcher(body);
+            String path = source.group(1).trim();
+            if (PrintAssets.sharedAsset(path) == null) {
+                log.debug("Font file not bundled, skipped: {}", path);
+                continue;
+            }
+            list.add(new FontFace(family.group(1).trim(), weight.find() ? weight.group(1).trim() : "400", path));
+        }
+        return Collections.unmodifiableList(list);
+    }
+}
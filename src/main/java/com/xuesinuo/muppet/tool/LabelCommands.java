@@ -0,0 +1,169 @@
+package com.xuesinuo.muppet.tool;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 热敏标签打印机的原始指令
+ *
+ * PDF 每页按打印机分辨率渲染为黑白位图，再编码为 ZPL（^GF）、ESC/POS（GS v 0）或 TSPL（BITMAP）指令，
+ * 由打印机直接打印，不经过驱动的 Java2D 光栅化。
+ */
+@Slf4j
+public class LabelCommands {
+
+    /**
+     * 把 PDF 文档编码为打印机指令，每页一张标签
+     *
+     * @param mode     ZPL、ESC_POS 或 TSPL
+     * @param document PDF 文档
+     * @param dpi      打印机分辨率
+     */
+    public static byte[] encode(PrintMode mode, PDDocument document, int dpi) throws IOException {
+        PDFRenderer renderer = new PDFRenderer(document);
+        List<BufferedImage> images = new ArrayList<>(document.getNumberOfPages());
+        for (int i = 0; i < document.getNumberOfPages(); i++) {
+            images.add(renderer.renderImageWithDPI(i, dpi, ImageType.BINARY));
+        }
+        return encode(mode, images, dpi);
+    }
+
+    /**
+     * 把位图（例如按打印机分辨率截图得到的页面）编码为打印机指令，每张一张标签
+     *
+     * @param mode   ZPL、ESC_POS 或 TSPL
+     * @param images 位图，非黑白位图按亮度阈值转换
+     * @param dpi    打印机分辨率
+     */
+    public static byte[] encode(PrintMode mode, List<BufferedImage> images, int dpi) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (BufferedImage image : images) {
+            byte[] page = switch (mode) {
+                case ZPL -> zpl(image);
+                case ESC_POS -> escPos(image);
+                case TSPL -> tspl(image, dpi);
+                default -> throw new IllegalArgumentException("Not a raw command mode: " + mode);
+            };
+            out.writeBytes(page);
+        }
+        log.info("Encoded {} page(s) as {} at {} dpi, size: {} bytes", images.size(), mode, dpi, out.size());
+        return out.toByteArray();
+    }
+
+    /**
+     * ZPL：^GFA 以十六进制传输位图，1 为黑点
+     */
+    public static byte[] zpl(BufferedImage image) {
+        int bytesPerRow = bytesPerRow(image);
+        byte[] bits = packBits(image, true);
+        StringBuilder zpl = new StringBuilder(bits.length * 2 + 64);
+        zpl.append("^XA^PW").append(image.getWidth()).append("^LL").append(image.getHeight())
+                .append("^FO0,0^GFA,").append(bits.length).append(',').append(bits.length).append(',')
+                .append(bytesPerRow).append(',');
+        for (byte b : bits) {
+            zpl.append(Character.toUpperCase(Character.forDigit((b >> 4) & 0xF, 16)))
+                    .append(Character.toUpperCase(Character.forDigit(b & 0xF, 16)));
+        }
+        zpl.append("^FS^XZ\n");
+        return zpl.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * ESC/POS：GS v 0 光栅位图，1 为黑点，打印后走纸切纸
+     */
+    public static byte[] escPos(BufferedImage image) {
+        int bytesPerRow = bytesPerRow(image);
+        int height = image.getHeight();
+        byte[] bits = packBits(image, true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bits.length + 16);
+        out.write(0x1B); // ESC @ 初始化
+        out.write('@');
+        out.write(0x1D); // GS v 0 m xL xH yL yH
+        out.write('v');
+        out.write('0');
+        out.write(0);
+        out.write(bytesPerRow & 0xFF);
+        out.write((bytesPerRow >> 8) & 0xFF);
+        out.write(height & 0xFF);
+        out.write((height >> 8) & 0xFF);
+        out.writeBytes(bits);
+        out.write(0x1D); // GS V 66 0 走纸并切纸
+        out.write('V');
+        out.write(66);
+        out.write(0);
+        return out.toByteArray();
+    }
+
+    /**
+     * TSPL：BITMAP 模式 0 覆盖写入，0 为黑点
+     */
+    public static byte[] tspl(BufferedImage image, int dpi) {
+        int bytesPerRow = bytesPerRow(image);
+        byte[] bits = packBits(image, false);
+        String header = String.format(Locale.ROOT, "SIZE %.1f mm,%.1f mm\r\nCLS\r\nBITMAP 0,0,%d,%d,0,",
+                image.getWidth() * 25.4 / dpi, image.getHeight() * 25.4 / dpi, bytesPerRow, image.getHeight());
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bits.length + 64);
+        out.writeBytes(header.getBytes(StandardCharsets.US_ASCII));
+        out.writeBytes(bits);
+        out.writeBytes("\r\nPRINT 1\r\n".getBytes(StandardCharsets.US_ASCII));
+        return out.toByteArray();
+    }
+
+    private static int bytesPerRow(BufferedImage image) {
+        return (image.getWidth() + 7) / 8;
+    }
+
+    /**
+     * 按行打包位图，每字节 8 个点，高位在左，行尾不足 8 点按白色补齐
+     *
+     * @param blackIsOne 黑点是否为 1
+     */
+    private static byte[] packBits(BufferedImage image, boolean blackIsOne) {
+        BufferedImage binary = image.getType() == BufferedImage.TYPE_BYTE_BINARY ? image : toBinary(image);
+        Raster raster = binary.getRaster();
+        int width = binary.getWidth();
+        int height = binary.getHeight();
+        int bytesPerRow = bytesPerRow(binary);
+        byte[] bits = new byte[bytesPerRow * height];
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            raster.getSamples(0, y, width, 1, 0, row);
+            for (int x = 0; x < width; x++) {
+                // TYPE_BYTE_BINARY：0 黑 1 白
+                if (row[x] == 0) {
+                    bits[y * bytesPerRow + (x >> 3)] |= (byte) (0x80 >> (x & 7));
+                }
+            }
+        }
+        if (!blackIsOne) {
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] = (byte) ~bits[i];
+            }
+        }
+        return bits;
+    }
+
+    private static BufferedImage toBinary(BufferedImage image) {
+        BufferedImage binary = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_BYTE_BINARY);
+        Graphics2D g = binary.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, image.getWidth(), image.getHeight());
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return binary;
+    }
+}
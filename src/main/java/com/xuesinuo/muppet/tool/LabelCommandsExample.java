@@ -0,0 +1,62 @@
+package com.xuesinuo.muppet.tool;
+
+import com.xuesinuo.muppet.config.MuppetConfig;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 标签机原始指令示例：100x150mm 标签分别编码为 ZPL、ESC/POS、TSPL 写入文件，可用于核对指令内容
+ */
+@Slf4j
+public class LabelCommandsExample {
+    public static void main(String[] args) throws Exception {
+        byte[] pdf = labelPdf();
+        Path outDir = Path.of("./label_output");
+        Files.createDirectories(outDir);
+        for (PrintMode mode : new PrintMode[] { PrintMode.ZPL, PrintMode.ESC_POS, PrintMode.TSPL }) {
+            Path out = outDir.resolve("label." + mode.name().toLowerCase());
+            long start = System.nanoTime();
+            try (PDDocument document = PDDocument.load(pdf)) {
+                Files.write(out, LabelCommands.encode(mode, document, MuppetConfig.LABEL_DPI));
+            }
+            log.info("{}: {} bytes in {} ms -> {}", mode, Files.size(out), (System.nanoTime() - start) / 1_000_000,
+                    out.toAbsolutePath());
+        }
+    }
+
+    /** 一张带边框、文字和条纹的 100x150mm 标签 */
+    private static byte[] labelPdf() throws Exception {
+        float mm = 72f / 25.4f;
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = new PDPage(new PDRectangle(100 * mm, 150 * mm));
+            document.addPage(page);
+            try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                content.setLineWidth(2);
+                content.addRect(5 * mm, 5 * mm, 90 * mm, 140 * mm);
+                content.stroke();
+                for (int i = 0; i < 30; i++) {
+                    content.addRect((10 + i * 2.6f) * mm, 20 * mm, (i % 3 + 1) * 0.4f * mm, 25 * mm);
+                }
+                content.fill();
+                content.beginText();
+                content.setFont(PDType1Font.HELVETICA_BOLD, 28);
+                content.newLineAtOffset(12 * mm, 120 * mm);
+                content.showText("MUPPET PRINT");
+                content.endText();
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.save(out);
+            return out.toByteArray();
+        }
+    }
+}
@@ -1,9 +1,7 @@
 package com.xuesinuo.muppet.tool;
 
-import com.microsoft.playwright.Browser;
-import com.microsoft.playwright.BrowserType;
+import com.microsoft.playwright.BrowserContext;
 import com.microsoft.playwright.Page;
-import com.microsoft.playwright.Playwright;
 import com.microsoft.playwright.Page.PdfOptions;
 import com.microsoft.playwright.options.Margin;
 import lombok.extern.slf4j.Slf4j;
@@ -79,10 +77,10 @@ public class PdfGenerator {
                 }
             }
 
-            // Render with Playwright/Chromium
-            try (Playwright playwright = Playwright.create();
-                 Browser browser = playwright.chromium().launch(new BrowserType.LaunchOptions().setHeadless(true));
-                 Page page = browser.newPage()) {
+            // Render with a pooled Playwright/Chromium, isolated in its own context
+            try (BrowserPool.Lease lease = BrowserPool.borrow();
+                 BrowserContext context = lease.newContext();
+                 Page page = context.newPage()) {
 
                 // Navigate to local HTML so that relative resources resolve to the working dir
                 page.navigate(htmlPath.toUri().toString());
@@ -0,0 +1,243 @@
+package com.xuesinuo.muppet.tool;
+
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.Route;
+import com.xuesinuo.muppet.UiStarter;
+import com.xuesinuo.muppet.api.VersionApi;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 打印页面的资源服务
+ *
+ * 打印页面统一以虚拟地址 {@link #BASE_URL} 打开，通过 Playwright 请求拦截提供内容：任务自己的 index.html 和 imports 直接从内存
+ * （或关闭内存模式时从任务目录）读取，公共资源（imports 目录下的 js/css/font）从唯一的只读位置读取并常驻内存，不再复制到每个任务的临时目录。
+ * 页面引用的远程地址由 {@link RemoteAssets} 缓存提供。
+ */
+@Slf4j
+public class PrintAssets {
+
+    /** 打印页面的虚拟地址 */
+    public static final String BASE_URL = "http://muppet.local/";
+
+    private static final String CLASSPATH_ROOT = "/imports/";
+    private static final Path ASSET_ROOT = resolveAssetRoot();
+    private static final Map<String, Optional<byte[]>> sharedAssets = new ConcurrentHashMap<>();
+    /** 影响渲染结果的公共脚本和样式（字体随安装包版本变化，由版本号区分） */
+    private static final List<String> RENDER_ASSETS = List.of("js/print.js", "js/petite-vue.js", "js/brcode.js",
+            "js/qrcode.js", "css/print.css");
+    private static volatile String renderDigest;
+
+    /**
+     * 为页面安装资源拦截，任务文件在内存中，页面随后可导航到 BASE_URL + "index.html"
+     *
+     * @param page     页面
+     * @param jobFiles 任务文件，key 为相对路径（index.html 及 imports 的 key）
+     */
+    public static void route(Page page, Map<String, byte[]> jobFiles) {
+        RemoteAssets.route(page);
+        page.route(BASE_URL + "**", route -> serve(route, jobFiles::get));
+    }
+
+    /**
+     * 为页面安装资源拦截，任务文件在目录中，页面随后可导航到 BASE_URL + "index.html"
+     *
+     * @param page   页面
+     * @param jobDir 任务目录，存放 index.html 和 imports
+     */
+    public static void route(Page page, Path jobDir) {
+        RemoteAssets.route(page);
+        page.route(BASE_URL + "**", route -> serve(route, path -> {
+            Path jobFile = jobDir.resolve(path).normalize();
+            if (!jobFile.startsWith(jobDir) || !Files.isRegularFile(jobFile)) {
+                return null;
+            }
+            try {
+                return Files.readAllBytes(jobFile);
+            } catch (IOException e) {
+                log.warn("Failed to read job file {}: {}", jobFile, e.toString());
+                return null;
+            }
+        }));
+    }
+
+    /**
+     * 组装任务文件：index.html 及 imports
+     */
+    public static Map<String, byte[]> jobFiles(String html, Map<String, String> imports) {
+        return jobFiles(html, imports, null);
+    }
+
+    /**
+     * 组装任务文件：index.html、文本 imports 及二进制 imports（图片、字体等原样使用，不经 base64）
+     */
+    public static Map<String, byte[]> jobFiles(String html, Map<String, String> imports,
+            Map<String, byte[]> binaryImports) {
+        Map<String, byte[]> files = new HashMap<>();
+        if (imports != null) {
+            for (Map.Entry<String, String> importEntry : imports.entrySet()) {
+                if (importEntry.getKey() != null && importEntry.getValue() != null) {
+                    files.put(normalize(importEntry.getKey()), importEntry.getValue().getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+        if (binaryImports != null) {
+            for (Map.Entry<String, byte[]> importEntry : binaryImports.entrySet()) {
+                if (importEntry.getKey() != null && importEntry.getValue() != null) {
+                    files.put(normalize(importEntry.getKey()), importEntry.getValue());
+                }
+            }
+        }
+        files.put("index.html", html.getBytes(StandardCharsets.UTF_8));
+        return files;
+    }
+
+    private static void serve(Route route, Function<String, byte[]> jobFiles) {
+        String path = relativePath(route.request().url());
+        if (path == null) {
+            route.fulfill(new Route.FulfillOptions().setStatus(400));
+            return;
+        }
+        // 任务自己的文件优先，允许覆盖公共资源
+        byte[] jobFile = jobFiles.apply(path);
+        if (jobFile != null) {
+            route.fulfill(new Route.FulfillOptions()
+                    .setStatus(200)
+                    .setContentType(contentType(path))
+                    .setBodyBytes(jobFile));
+            return;
+        }
+        byte[] shared = sharedAsset(path);
+        if (shared != null) {
+            route.fulfill(new Route.FulfillOptions()
+                    .setStatus(200)
+                    .setContentType(contentType(path))
+                    .setHeaders(Map.of("Cache-Control", "max-age=31536000, immutable"))
+                    .setBodyBytes(shared));
+            return;
+        }
+        log.warn("Print asset not found: {}", path);
+        route.fulfill(new Route.FulfillOptions().setStatus(404));
+    }
+
+    /**
+     * 读取公共资源，首次读取后常驻内存
+     *
+     * @param path 相对 imports 目录的路径，例如 js/print.js
+     * @return 文件内容，不存在时返回 null
+     */
+    static byte[] sharedAsset(String path) {
+        return sharedAssets.computeIfAbsent(path, PrintAssets::loadSharedAsset).orElse(null);
+    }
+
+    /**
+     * 版本号及公共脚本、样式的摘要，计入渲染缓存 key：磁盘缓存跨重启保留，升级后不能再命中旧资源渲染的结果
+     */
+    static String renderDigest() {
+        String digest = renderDigest;
+        if (digest == null) {
+            Map<String, byte[]> assets = new HashMap<>();
+            for (String path : RENDER_ASSETS) {
+                assets.put(path, sharedAsset(path));
+            }
+            digest = RenderCache.digest(VersionApi.VERSION, assets);
+            renderDigest = digest;
+        }
+        return digest;
+    }
+
+    private static Optional<byte[]> loadSharedAsset(String path) {
+        try {
+            if (ASSET_ROOT != null) {
+                Path file = ASSET_ROOT.resolve(path).normalize();
+                if (file.startsWith(ASSET_ROOT) && Files.isRegularFile(file)) {
+                    return Optional.of(Files.readAllBytes(file));
+                }
+                return Optional.empty();
+            }
+            try (InputStream in = PrintAssets.class.getResourceAsStream(CLASSPATH_ROOT + path)) {
+                return in == null ? Optional.empty() : Optional.of(in.readAllBytes());
+            }
+        } catch (IOException e) {
+            log.warn("Failed to read print asset {}: {}", path, e.toString());
+            return Optional.empty();
+        }
+    }
+
+    /** imports 的 key 统一为不带前导 ./ 和 / 的相对路径 */
+    private static String normalize(String key) {
+        String path = key.replace('\\', '/');
+        while (path.startsWith("./") || path.startsWith("/")) {
+            path = path.substring(path.startsWith("./") ? 2 : 1);
+        }
+        return path;
+    }
+
+    /** 请求地址转为相对路径，非法路径返回 null */
+    private static String relativePath(String url) {
+        String path = URI.create(url).getPath();
+        if (path == null) {
+            return null;
+        }
+        path = path.startsWith("/") ? path.substring(1) : path;
+        if (path.isEmpty()) {
+            path = "index.html";
+        }
+        if (path.contains("..") || path.contains("\\")) {
+            return null;
+        }
+        return path;
+    }
+
+    private static String contentType(String path) {
+        String lower = path.toLowerCase();
+        if (lower.endsWith(".js")) return "application/javascript; charset=utf-8";
+        if (lower.endsWith(".css")) return "text/css; charset=utf-8";
+        if (lower.endsWith(".html") || lower.endsWith(".htm")) return "text/html; charset=utf-8";
+        if (lower.endsWith(".ttf")) return "font/ttf";
+        if (lower.endsWith(".otf")) return "font/otf";
+        if (lower.endsWith(".woff")) return "font/woff";
+        if (lower.endsWith(".woff2")) return "font/woff2";
+        if (lower.endsWith(".png")) return "image/png";
+        if (lower.endsWith(".jpg") || lower.endsWith(".jpeg")) return "image/jpeg";
+        if (lower.endsWith(".gif")) return "image/gif";
+        if (lower.endsWith(".webp")) return "image/webp";
+        if (lower.endsWith(".svg")) return "image/svg+xml";
+        if (lower.endsWith(".json")) return "application/json; charset=utf-8";
+        return "application/octet-stream";
+    }
+
+    /** 公共资源目录：开发环境、Windows/MacOS 安装路径，都不存在时从 classpath 读取 */
+    private static Path resolveAssetRoot() {
+        File importFiles = new File("src/main/resources/imports");// 开发环境路径
+        if (!importFiles.exists() || !importFiles.isDirectory()) {
+            String os = System.getProperty("os.name").toLowerCase();
+            if (os.contains("win")) {
+                importFiles = new File("app/classes/imports");// Windows安装路径
+            } else if (os.contains("mac")) {
+                importFiles = new File("/Applications/MuppetPrint.app/Contents/app/classes/imports");// MacOS安装路径
+            }
+        }
+        if (importFiles.exists() && importFiles.isDirectory()) {
+            return importFiles.toPath().toAbsolutePath().normalize();
+        }
+        if (PrintAssets.class.getResource(CLASSPATH_ROOT + "js/print.js") == null) {
+            UiStarter.error("imports?" + new File(".").getAbsolutePath());
+        }
+        return null;
+    }
+}
@@ -0,0 +1,26 @@
+package com.xuesinuo.muppet.tool;
+
+/**
+ * 送打印机方式
+ */
+public enum PrintMode {
+    /** 打印机支持 PDF 时直接发送 PDF，否则使用 PDFBox */
+    AUTO,
+    /** PDFBox 经 Java2D 渲染后打印，兼容所有驱动 */
+    PDFBOX,
+    /** 直接发送 PDF 原始字节（IPP/CUPS 等支持 PDF 的打印机），失败时退回 PDFBox */
+    PDF_DIRECT,
+    /** 按打印机分辨率截图为位图，通过 Printable 打印，不生成 PDF */
+    RASTER,
+    /** 斑马等标签机：位图转为 ZPL ^GF 指令 */
+    ZPL,
+    /** 小票/标签机：位图转为 ESC/POS GS v 0 指令 */
+    ESC_POS,
+    /** TSC 等标签机：位图转为 TSPL BITMAP 指令 */
+    TSPL;
+
+    /** 是否发送打印机原始指令 */
+    public boolean isRawCommand() {
+        return this == ZPL || this == ESC_POS || this == TSPL;
+    }
+}
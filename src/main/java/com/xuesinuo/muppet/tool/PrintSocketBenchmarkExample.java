@@ -0,0 +1,220 @@
+package com.xuesinuo.muppet.tool;
+
+import io.vertx.core.json.Json;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 高频打印客户端的接口对比：/api/print（每张标签一次 HTTP 请求，带跨域 Origin 头）与长连接 /ws/print、TCP，
+ * 每个客户端模拟一把扫描枪，逐条发送模板打印命令，统计每秒受理的命令数（收到 QUEUED 确认或 HTTP 响应即算受理，不等待打印完成）。
+ * WebSocket 分别测试逐条等待确认和连续发送（最多 window 条未确认）两种方式。
+ *
+ * 需先启动服务（-Dmuppet.socket.tcpPort 开启 TCP），打印机建议使用虚拟打印机或打印机组，muppet.job.queueDepth 调大以免队列满被拒绝。
+ *
+ * 参数：服务地址 打印机 客户端数 每个客户端命令数 TCP端口（0 不测）
+ */
+@Slf4j
+public class PrintSocketBenchmarkExample {
+
+    private static final String TEMPLATE_ID = "socket-benchmark";
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://127.0.0.1:8080";
+        String printer = args.length > 1 ? args[1] : "Microsoft Print to PDF";
+        int clients = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        int commands = args.length > 3 ? Integer.parseInt(args[3]) : 2000;
+        int tcpPort = args.length > 4 ? Integer.parseInt(args[4]) : 0;
+        int window = 32;
+
+        HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        registerTemplate(http, baseUrl);
+
+        for (int round = 0; round < 2; round++) {// 第一轮为预热
+            run("http /api/print", clients, commands, c -> httpClient(http, baseUrl, printer, c, commands));
+            run("websocket lockstep", clients, commands, c -> webSocketClient(http, baseUrl, printer, c, commands, 1));
+            run("websocket window=" + window, clients, commands,
+                    c -> webSocketClient(http, baseUrl, printer, c, commands, window));
+            if (tcpPort > 0) {
+                String host = URI.create(baseUrl).getHost();
+                run("tcp lockstep", clients, commands, c -> tcpClient(host, tcpPort, printer, c, commands, 1));
+                run("tcp window=" + window, clients, commands,
+                        c -> tcpClient(host, tcpPort, printer, c, commands, window));
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Client {
+        int run(int client) throws Exception;
+    }
+
+    /** 并发运行 clients 个客户端，返回后输出吞吐量 */
+    private static void run(String name, int clients, int commands, Client client) throws Exception {
+        long start = System.nanoTime();
+        int accepted = 0;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                int index = c;
+                results.add(executor.submit(() -> client.run(index)));
+            }
+            for (Future<Integer> result : results) {
+                accepted += result.get();
+            }
+        }
+        long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        log.info("{}: {} commands ({} accepted) in {} ms, {} req/s", name, clients * commands, accepted, millis,
+                clients * commands * 1000L / millis);
+    }
+
+    private static String command(String printer, int client, int seq) {
+        return Json.encode(Map.of(
+                "id", client + "-" + seq,
+                "templateId", TEMPLATE_ID,
+                "printerNameOrId", printer,
+                "data", Map.of("barcode", "SCAN" + client + "-" + seq)));
+    }
+
+    /** /api/print 的请求体：同样的命令，没有 id */
+    private static String printParam(String printer, int client, int seq) {
+        return Json.encode(Map.of(
+                "templateId", TEMPLATE_ID,
+                "printerNameOrId", printer,
+                "data", Map.of("barcode", "SCAN" + client + "-" + seq)));
+    }
+
+    /** 一次 HTTP 请求打印一张标签（浏览器中的扫描页面即如此） */
+    private static int httpClient(HttpClient http, String baseUrl, String printer, int client, int commands)
+            throws Exception {
+        int accepted = 0;
+        for (int i = 0; i < commands; i++) {
+            HttpResponse<String> response = http.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/print"))
+                    .header("Content-Type", "application/json")
+                    .header("Origin", "http://scanner.local")
+                    .POST(HttpRequest.BodyPublishers.ofString(printParam(printer, client, i)))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            if (response.body().contains("\"SUCCESS\"")) {
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+
+    /** WebSocket：最多 window 条命令等待 QUEUED 确认，DONE/FAILED 确认不计 */
+    private static int webSocketClient(HttpClient http, String baseUrl, String printer, int client, int commands,
+            int window) throws Exception {
+        Semaphore inFlight = new Semaphore(window);
+        AtomicInteger acked = new AtomicInteger();
+        AtomicInteger accepted = new AtomicInteger();
+        CompletableFuture<Void> allAcked = new CompletableFuture<>();
+        WebSocket ws = http.newWebSocketBuilder()
+                .buildAsync(URI.create(baseUrl.replaceFirst("^http", "ws") + "/ws/print"), new WebSocket.Listener() {
+                    private final StringBuilder text = new StringBuilder();
+
+                    @Override
+                    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+                        text.append(data);
+                        if (last) {
+                            String ack = text.toString();
+                            text.setLength(0);
+                            if (!ack.contains("\"DONE\"") && !ack.contains("\"FAILED\"")) {
+                                if (ack.contains("\"QUEUED\"")) {
+                                    accepted.incrementAndGet();
+                                }
+                                inFlight.release();
+                                if (acked.incrementAndGet() == commands) {
+                                    allAcked.complete(null);
+                                }
+                            }
+                        }
+                        webSocket.request(1);
+                        return null;
+                    }
+                }).join();
+        for (int i = 0; i < commands; i++) {
+            inFlight.acquire();
+            ws.sendText(command(printer, client, i), true).join();
+        }
+        allAcked.join();
+        ws.sendClose(WebSocket.NORMAL_CLOSURE, "").join();
+        return accepted.get();
+    }
+
+    /** TCP：4 字节长度 + JSON，确认格式相同 */
+    private static int tcpClient(String host, int port, String printer, int client, int commands, int window)
+            throws Exception {
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            int sent = 0;
+            int acked = 0;
+            int accepted = 0;
+            while (acked < commands) {
+                while (sent < commands && sent - acked < window) {
+                    byte[] body = command(printer, client, sent++).getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(body.length);
+                    out.write(body);
+                }
+                out.flush();
+                byte[] frame = new byte[in.readInt()];
+                in.readFully(frame);
+                String ack = new String(frame, StandardCharsets.UTF_8);
+                if (ack.contains("\"DONE\"") || ack.contains("\"FAILED\"")) {
+                    continue;
+                }
+                acked++;
+                if (ack.contains("\"QUEUED\"")) {
+                    accepted++;
+                }
+            }
+            return accepted;
+        }
+    }
+
+    /** 注册一个最简单的条码标签模板，服务端没有可用浏览器时只记录警告（命令仍会被受理，渲染时失败） */
+    private static void registerTemplate(HttpClient http, String baseUrl) throws Exception {
+        String html = """
+                <!DOCTYPE html>
+                <html>
+                <head>
+                  <meta charset="utf-8" />
+                  <link rel="stylesheet" href="css/print.css" />
+                  <script>var w = 50; var h = 30; var d = { barcode: '' }; var f = {};</script>
+                </head>
+                <body>
+                  <div class="print-page" v-scope>{{ barcode }}</div>
+                  <script src="js/petite-vue.js"></script>
+                  <script src="js/print.js"></script>
+                </body>
+                </html>
+                """;
+        HttpResponse<String> response = http.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/registerTemplate"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(Json.encode(Map.of(
+                        "templateId", TEMPLATE_ID, "html", html, "pageWidth", 50, "pageHeight", 30))))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        if (!response.body().contains("\"SUCCESS\"")) {
+            log.warn("Template registration failed: {}", response.body());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.xuesinuo.muppet.tool;
+
+import com.xuesinuo.muppet.config.MuppetConfig;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 打印机组
+ * 
+ * 同一条产线上的多台同型号打印机组成一个组，printerNameOrId 填组名时由任务队列分配给排队最少的成员。
+ * 组名优先于同名的打印机；打印方式、分辨率可按组名设置，成员未单独设置时沿用组的设置。
+ * 启动时从 muppet.printer.groups 读取（格式：组名=打印机1,打印机2;组名2=...），也可通过接口修改。
+ */
+@Slf4j
+public class PrinterGroups {
+
+    /**
+     * 打印机组
+     */
+    @AllArgsConstructor
+    @Data
+    public static class PrinterGroup {
+        public String name; // 组名
+        public List<String> members; // 成员打印机名称
+    }
+
+    /** key 为小写组名 */
+    private static final Map<String, PrinterGroup> groups = new ConcurrentHashMap<>();
+    /** 成员到组的反查，key 为小写打印机名称 */
+    private static final Map<String, PrinterGroup> memberOf = new ConcurrentHashMap<>();
+
+    static {
+        for (String definition : MuppetConfig.PRINTER_GROUPS.split(";")) {
+            int eq = definition.indexOf('=');
+            if (eq > 0) {
+                set(definition.substring(0, eq), List.of(definition.substring(eq + 1).split(",")));
+            }
+        }
+    }
+
+    /**
+     * 设置（或替换）打印机组，成员为空时删除
+     * 
+     * @return 设置后的组，删除时为 null
+     */
+    public static synchronized PrinterGroup set(String name, List<String> members) {
+        PrinterGroup old = groups.remove(key(name));
+        if (old != null) {
+            old.getMembers().forEach(member -> memberOf.remove(key(member), old));
+        }
+        List<String> names = members == null ? List.of()
+                : members.stream().filter(member -> member != null && !member.isBlank()).map(String::trim).toList();
+        if (names.isEmpty()) {
+            log.info("Printer group {} removed", name);
+            return null;
+        }
+        PrinterGroup group = new PrinterGroup(name.trim(), names);
+        groups.put(key(name), group);
+        names.forEach(member -> memberOf.put(key(member), group));
+        log.info("Printer group {} set: {}", group.getName(), group.getMembers());
+        return group;
+    }
+
+    /**
+     * 按组名查找，不是组时返回 null
+     */
+    public static PrinterGroup get(String name) {
+        return name == null || name.isBlank() ? null : groups.get(key(name));
+    }
+
+    /**
+     * 打印机所属的组，不属于任何组时返回 null
+     */
+    public static PrinterGroup groupOf(String printerName) {
+        return printerName == null || printerName.isBlank() ? null : memberOf.get(key(printerName));
+    }
+
+    public static List<PrinterGroup> list() {
+        return new ArrayList<>(groups.values());
+    }
+
+    private static String key(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,375 @@
+package com.xuesinuo.muppet.tool;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.print.DocFlavor;
+import javax.print.PrintService;
+import javax.print.PrintServiceLookup;
+import javax.print.attribute.standard.ColorSupported;
+import javax.print.attribute.standard.Media;
+import javax.print.attribute.standard.MediaSizeName;
+import javax.print.attribute.standard.PrinterIsAcceptingJobs;
+import javax.print.attribute.standard.PrinterResolution;
+import javax.print.attribute.standard.PrinterState;
+import javax.print.attribute.standard.QueuedJobCount;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.xuesinuo.muppet.config.MuppetConfig;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 打印机注册表
+ *
+ * PrintServiceLookup.lookupPrintServices 在 Windows 网络打印机较多时可能耗时数百毫秒到数秒，这里缓存打印机及其属性，
+ * 由后台线程定时刷新；列表和按名称查找都从内存读取，名称不区分大小写。查找不到时（可能是新添加的打印机）立即刷新一次，
+ * 但两次刷新之间至少间隔 {@link #MIN_REFRESH_GAP_MS}。打印机的能力（纸张、分辨率、彩色、文档格式）在首次发现时异步查询，
+ * 状态（是否接受任务、队列任务数）由后台线程定时查询，打印时据此快速失败而不阻塞打印线程。
+ * 能力也是打印时是否直接发送 PDF 的唯一依据，打印机实际拒绝 PDF 格式时降级，列表接口与打印行为保持一致。
+ */
+@Slf4j
+public class PrinterRegistry {
+
+    /**
+     * 打印机能力，打印机首次发现时异步查询一次
+     */
+    @Data
+    public static class Capabilities {
+        public List<String> mediaSizes; // 支持的纸张
+        public List<String> resolutions; // 支持的分辨率，例如 203x203dpi
+        public boolean colorSupported; // 是否支持彩色
+        public List<String> docFlavors; // 支持的文档格式（MIME）
+        @JsonIgnore
+        public DocFlavor pdfFlavor; // 直接发送 PDF 使用的格式（优先字节数组），不接受 PDF 时为 null
+        @JsonIgnore
+        public List<MediaSizeName> mediaSizeNames; // 支持的纸张（含驱动自定义的标签尺寸），直接发送 PDF 时按页面尺寸选择
+    }
+
+    /**
+     * 打印机状态，后台定时刷新
+     */
+    @Data
+    public static class Status {
+        public Boolean acceptingJobs; // 是否接受任务，驱动未提供时为 null
+        public Integer queuedJobCount; // 打印机队列中的任务数，驱动未提供时为 null
+        public String state; // 打印机状态（idle、processing、stopped），驱动未提供时为 null
+        public long updatedAt; // 查询时间
+    }
+
+    /**
+     * 缓存的打印机
+     */
+    static class PrinterEntry {
+        final PrintService service;
+        final String description;
+        volatile Capabilities capabilities;
+        volatile Status status;
+
+        PrinterEntry(PrintService service, String description, PrinterEntry previous) {
+            this.service = service;
+            this.description = description;
+            if (previous != null) {
+                this.capabilities = previous.capabilities;
+                this.status = previous.status;
+            }
+        }
+    }
+
+    /** 一次刷新的结果，整体替换，读取时无需加锁 */
+    @AllArgsConstructor
+    private static class Snapshot {
+        final List<PrinterEntry> printers;
+        final Map<String, PrinterEntry> byName;
+        final PrintService defaultService;
+        final long refreshedAt;
+    }
+
+    private static final long MIN_REFRESH_GAP_MS = 5_000;
+
+    private static volatile Snapshot snapshot;
+    /** 已安排后台刷新，尚未执行 */
+    private static final AtomicBoolean refreshQueued = new AtomicBoolean();
+    /** 后台刷新和能力、状态查询共用一个线程，不占用请求线程和打印线程；虚拟线程模式下各打印机的查询并行执行 */
+    private static final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "muppet-printer-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        if (MuppetConfig.PRINTER_REFRESH_MS > 0) {
+            refresher.scheduleWithFixedDelay(() -> {
+                try {
+                    refresh();
+                } catch (Exception e) {
+                    log.warn("Printer refresh failed", e);
+                }
+            }, MuppetConfig.PRINTER_REFRESH_MS, MuppetConfig.PRINTER_REFRESH_MS, TimeUnit.MILLISECONDS);
+        }
+        if (MuppetConfig.PRINTER_STATUS_MS > 0) {
+            refresher.scheduleWithFixedDelay(PrinterRegistry::refreshStatus,
+                    MuppetConfig.PRINTER_STATUS_MS, MuppetConfig.PRINTER_STATUS_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 所有打印机，按系统返回的顺序
+     */
+    static List<PrinterEntry> printers() {
+        return current().printers;
+    }
+
+    /**
+     * 按名称查找打印机，不区分大小写；名称为空时返回默认打印机，找不到时返回 null
+     */
+    public static PrintService find(String printerNameOrId) {
+        Snapshot current = current();
+        if (printerNameOrId == null || printerNameOrId.isBlank()) {
+            return current.defaultService;
+        }
+        String key = key(printerNameOrId);
+        PrinterEntry entry = current.byName.get(key);
+        if (entry == null && System.currentTimeMillis() - current.refreshedAt >= MIN_REFRESH_GAP_MS) {
+            entry = doRefresh().byName.get(key);
+        }
+        return entry == null ? null : entry.service;
+    }
+
+    /**
+     * 打印机的能力和状态快照，未知的打印机或尚未查询完成时为 null
+     */
+    static PrinterEntry peek(String printerNameOrId) {
+        Snapshot current = snapshot;
+        if (current == null || printerNameOrId == null || printerNameOrId.isBlank()) {
+            return null;
+        }
+        return current.byName.get(key(printerNameOrId));
+    }
+
+    /**
+     * 打印机是否在注册表中，不阻塞调用线程（提交任务在事件循环中调用）：查找不到时安排一次后台刷新（两次刷新之间至少间隔
+     * {@link #MIN_REFRESH_GAP_MS}），新添加的打印机在刷新完成后即可找到；启动时首次查询尚未完成时视为存在
+     */
+    public static boolean isKnown(String printerNameOrId) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            refreshLater();
+            return true;
+        }
+        if (printerNameOrId != null && current.byName.containsKey(key(printerNameOrId))) {
+            return true;
+        }
+        if (System.currentTimeMillis() - current.refreshedAt >= MIN_REFRESH_GAP_MS) {
+            refreshLater();
+        }
+        return false;
+    }
+
+    /**
+     * 根据最近一次状态判断打印机是否接受任务；未知的打印机或驱动未提供状态时视为接受，不阻塞查询
+     */
+    public static boolean isAcceptingJobs(String printerNameOrId) {
+        PrinterEntry entry = peek(printerNameOrId);
+        Status status = entry == null ? null : entry.status;
+        return status == null || status.acceptingJobs == null || status.acceptingJobs;
+    }
+
+    /**
+     * 打印机队列中的任务数（驱动提供时），未知时为 0
+     */
+    public static int queuedJobCount(String printerNameOrId) {
+        PrinterEntry entry = peek(printerNameOrId);
+        Status status = entry == null ? null : entry.status;
+        return status == null || status.queuedJobCount == null ? 0 : status.queuedJobCount;
+    }
+
+    /**
+     * 打印机的能力：能力尚未查询完成时在调用线程查询（打印线程可以阻塞），不在注册表中的打印机直接查询、不缓存
+     */
+    public static Capabilities capabilities(PrintService service) {
+        PrinterEntry entry = peek(service.getName());
+        if (entry == null) {
+            return queryCapabilities(service);
+        }
+        Capabilities capabilities = entry.capabilities;
+        if (capabilities == null) {
+            capabilities = queryCapabilities(service);
+            entry.capabilities = capabilities;
+        }
+        return capabilities;
+    }
+
+    /**
+     * 打印机拒绝了 PDF 格式（FlavorException）：之后不再直接发送 PDF，列表中的 pdfSupported 同时变为 false，
+     * 直到打印机被移除后重新发现或进程重启
+     */
+    public static void rejectPdf(PrintService service) {
+        PrinterEntry entry = peek(service.getName());
+        Capabilities current = entry == null ? null : entry.capabilities;
+        if (current == null || current.pdfFlavor == null) {
+            return;
+        }
+        Capabilities downgraded = new Capabilities();
+        downgraded.setMediaSizes(current.mediaSizes);
+        downgraded.setResolutions(current.resolutions);
+        downgraded.setColorSupported(current.colorSupported);
+        downgraded.setDocFlavors(current.docFlavors.stream().filter(mime -> !mime.equals("application/pdf")).toList());
+        downgraded.setMediaSizeNames(current.mediaSizeNames);
+        entry.capabilities = downgraded;
+        log.info("Printer {} rejected PDF, no longer sending PDF directly", service.getName());
+    }
+
+    /**
+     * 立即重新查询系统打印机
+     */
+    public static void refresh() {
+        doRefresh();
+    }
+
+    private static void refreshLater() {
+        if (refreshQueued.compareAndSet(false, true)) {
+            refresher.execute(() -> {
+                refreshQueued.set(false);
+                try {
+                    refresh();
+                } catch (Exception e) {
+                    log.warn("Printer refresh failed", e);
+                }
+            });
+        }
+    }
+
+    private static synchronized Snapshot doRefresh() {
+        long start = System.currentTimeMillis();
+        PrintService[] services = PrintServiceLookup.lookupPrintServices(null, null);
+        List<PrinterEntry> printers = new ArrayList<>(services.length);
+        Map<String, PrinterEntry> byName = new HashMap<>();
+        Snapshot previous = snapshot;
+        for (PrintService service : services) {
+            PrinterEntry entry = new PrinterEntry(service, description(service),
+                    previous == null ? null : previous.byName.get(key(service.getName())));
+            printers.add(entry);
+            byName.putIfAbsent(key(service.getName()), entry);
+        }
+        Snapshot refreshed = new Snapshot(Collections.unmodifiableList(printers), byName,
+                PrintServiceLookup.lookupDefaultPrintService(), System.currentTimeMillis());
+        snapshot = refreshed;
+        log.debug("Found {} printer(s) in {} ms", printers.size(), refreshed.refreshedAt - start);
+        // 新发现的打印机异步查询能力和状态
+        if (printers.stream().anyMatch(entry -> entry.capabilities == null || entry.status == null)) {
+            refresher.execute(PrinterRegistry::probeNew);
+        }
+        return refreshed;
+    }
+
+    private static void probeNew() {
+        BlockingThreads.forEach("muppet-printer-probe", current().printers, entry -> {
+            try {
+                if (entry.capabilities == null) {
+                    entry.capabilities = queryCapabilities(entry.service);
+                }
+                if (entry.status == null) {
+                    entry.status = status(entry.service);
+                }
+            } catch (Exception e) {
+                log.warn("Failed to query printer {}: {}", entry.service.getName(), e.toString());
+            }
+        });
+    }
+
+    private static void refreshStatus() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return;
+        }
+        BlockingThreads.forEach("muppet-printer-status", current.printers, entry -> {
+            try {
+                entry.status = status(entry.service);
+            } catch (Exception e) {
+                log.warn("Failed to query printer status {}: {}", entry.service.getName(), e.toString());
+            }
+        });
+    }
+
+    private static Capabilities queryCapabilities(PrintService service) {
+        Capabilities capabilities = new Capabilities();
+        List<String> mediaSizes = new ArrayList<>();
+        List<MediaSizeName> mediaSizeNames = new ArrayList<>();
+        if (service.getSupportedAttributeValues(Media.class, null, null) instanceof Media[] media) {
+            for (Media medium : media) {
+                if (medium instanceof MediaSizeName mediaSizeName) {
+                    mediaSizes.add(medium.toString());
+                    mediaSizeNames.add(mediaSizeName);
+                }
+            }
+        }
+        capabilities.setMediaSizes(mediaSizes);
+        capabilities.setMediaSizeNames(mediaSizeNames);
+        List<String> resolutions = new ArrayList<>();
+        if (service.getSupportedAttributeValues(PrinterResolution.class, null, null) instanceof PrinterResolution[] values) {
+            for (PrinterResolution resolution : values) {
+                resolutions.add(resolution.getCrossFeedResolution(PrinterResolution.DPI) + "x"
+                        + resolution.getFeedResolution(PrinterResolution.DPI) + "dpi");
+            }
+        }
+        capabilities.setResolutions(resolutions);
+        capabilities.setColorSupported(ColorSupported.SUPPORTED.equals(service.getAttribute(ColorSupported.class)));
+        List<String> docFlavors = new ArrayList<>();
+        DocFlavor pdfFlavor = null;
+        for (DocFlavor flavor : service.getSupportedDocFlavors()) {
+            if (!docFlavors.contains(flavor.getMimeType())) {
+                docFlavors.add(flavor.getMimeType());
+            }
+            if (DocFlavor.BYTE_ARRAY.PDF.equals(flavor)) {
+                pdfFlavor = flavor;
+            } else if (DocFlavor.INPUT_STREAM.PDF.equals(flavor) && pdfFlavor == null) {
+                pdfFlavor = flavor;
+            }
+        }
+        capabilities.setDocFlavors(docFlavors);
+        capabilities.setPdfFlavor(pdfFlavor);
+        return capabilities;
+    }
+
+    private static Status status(PrintService service) {
+        Status status = new Status();
+        PrinterIsAcceptingJobs accepting = service.getAttribute(PrinterIsAcceptingJobs.class);
+        status.setAcceptingJobs(accepting == null ? null : accepting == PrinterIsAcceptingJobs.ACCEPTING_JOBS);
+        QueuedJobCount queued = service.getAttribute(QueuedJobCount.class);
+        status.setQueuedJobCount(queued == null ? null : queued.getValue());
+        PrinterState state = service.getAttribute(PrinterState.class);
+        status.setState(state == null ? null : state.toString());
+        status.setUpdatedAt(System.currentTimeMillis());
+        return status;
+    }
+
+    private static Snapshot current() {
+        Snapshot current = snapshot;
+        return current != null ? current : doRefresh();
+    }
+
+    private static String key(String printerName) {
+        return printerName.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String description(PrintService service) {
+        try {
+            Object desc = service.getAttribute(javax.print.attribute.standard.PrinterInfo.class);
+            return desc == null ? "" : desc.toString();
+        } catch (Exception e) {
+            // 忽略获取描述失败的情况
+            return "";
+        }
+    }
+}
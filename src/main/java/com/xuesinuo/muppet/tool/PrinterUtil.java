@@ -1,26 +1,58 @@
 package com.xuesinuo.muppet.tool;
 
 import com.microsoft.playwright.Browser;
-import com.microsoft.playwright.BrowserType;
+import com.microsoft.playwright.BrowserContext;
 import com.microsoft.playwright.Page;
-import com.microsoft.playwright.Playwright;
-import com.xuesinuo.muppet.UiStarter;
+import com.microsoft.playwright.options.Media;
+import com.microsoft.playwright.options.ScreenshotType;
+import com.xuesinuo.muppet.config.MuppetConfig;
 import com.xuesinuo.muppet.config.exceptions.ServiceException;
 
+import io.vertx.core.json.Json;
+
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.multipdf.PDFMergerUtility;
+import org.apache.pdfbox.pdmodel.DefaultResourceCache;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.graphics.PDXObject;
+import org.apache.pdfbox.printing.PDFPageable;
+
 import javax.print.*;
+import javax.print.attribute.HashPrintRequestAttributeSet;
+import javax.print.attribute.PrintRequestAttributeSet;
+import javax.print.attribute.standard.MediaPrintableArea;
+import javax.print.attribute.standard.MediaSize;
+import javax.print.attribute.standard.MediaSizeName;
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.print.Book;
+import java.awt.print.PageFormat;
+import java.awt.print.Paper;
+import java.awt.print.Printable;
 import java.awt.print.PrinterJob;
-import java.io.File;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 /**
  * 打印机工具类
@@ -30,6 +62,11 @@ import java.util.Map;
 @Slf4j
 public class PrinterUtil {
 
+    /** 按打印机单独设置的送打印机方式，key 为小写打印机名称 */
+    private static final Map<String, PrintMode> printModes = new ConcurrentHashMap<>();
+    /** 按打印机单独设置的位图分辨率，key 为小写打印机名称 */
+    private static final Map<String, Integer> labelDpis = new ConcurrentHashMap<>();
+
     /**
      * 打印机信息
      */
@@ -39,6 +76,26 @@ public class PrinterUtil {
         public String id; // 打印机唯一标识
         public String name; // 打印机名称
         public String description; // 打印机描述
+        public PrintMode printMode; // 送打印机方式
+        public Boolean pdfSupported; // 是否接受 PDF 原始数据，能力查询完成前为 null
+        public PrinterRegistry.Capabilities capabilities; // 能力，查询完成前为 null
+        public PrinterRegistry.Status status; // 状态，查询完成前为 null
+    }
+
+    /**
+     * 渲染请求：HTML（html、imports、页面尺寸）或已注册的模板（templateId、data）二选一
+     */
+    @Data
+    public static class RenderRequest {
+        public String html; // HTML 内容
+        public Map<String, String> imports; // 相关依赖文件内容映射
+        public Map<String, byte[]> binaryImports; // 二进制依赖文件（图片、字体等），原样提供给页面
+        public double pageWidthMm; // 页面宽度（毫米）
+        public double pageHeightMm; // 页面高度（毫米）
+        public Boolean waitJsReady; // 是否等待 window.printReady
+        public String templateId; // 已注册的模板ID
+        public Object data; // 模板数据 d
+        public boolean skipCache; // 跳过渲染缓存
     }
 
     /**
@@ -48,27 +105,13 @@ public class PrinterUtil {
      */
     public static List<PrinterInfo> listPrinters() {
         List<PrinterInfo> printers = new ArrayList<>();
-        try {
-            // 获取所有可用的打印服务
-            PrintService[] services = PrintServiceLookup.lookupPrintServices(null, null);
-            for (PrintService service : services) {
-                String name = service.getName();
-                // 尝试获取打印机描述信息
-                String description = "";
-                try {
-                    Object desc = service.getAttribute(javax.print.attribute.standard.PrinterInfo.class);
-                    if (desc != null) {
-                        description = desc.toString();
-                    }
-                } catch (Exception e) {
-                    // 忽略获取描述失败的情况
-                }
-                printers.add(new PrinterInfo(name, name, description));
-                log.debug("Found printer: {}", name);
-            }
-            log.info("Found {} printer(s)", printers.size());
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+        // 从注册表缓存读取，不再每次查询系统
+        for (PrinterRegistry.PrinterEntry entry : PrinterRegistry.printers()) {
+            String name = entry.service.getName();
+            PrinterRegistry.Capabilities capabilities = entry.capabilities;
+            Boolean pdfSupported = capabilities == null ? null : capabilities.getPdfFlavor() != null;
+            printers.add(new PrinterInfo(name, name, entry.description, getPrintMode(name), pdfSupported,
+                    capabilities, entry.status));
         }
         return printers;
     }
@@ -76,13 +119,14 @@ public class PrinterUtil {
     /**
      * 将 HTML 静默打印到指定打印机 使用 Playwright (Chrome 内核) 直接通过 CDP 协议打印到物理打印机
      * 
+     * 同步执行渲染和送打印机；服务中的打印请求经由任务队列分别执行 {@link #renderHtml} 和 {@link #printPdf}
+     * 
      * @param html            HTML 内容
      * @param imports         相关依赖文件内容映射，key 为文件名，value 为文件内容
      * @param printerNameOrId 打印机名称或 ID
      * @param pageWidthMm     页面宽度（毫米）
      * @param pageHeightMm    页面高度（毫米）
      * @param waitJsReady     是否等待 JS 设置 window.printReady 为 true 再打印
-     * @return 打印是否成功
      */
     public static void printHtml(
             String html,
@@ -91,63 +135,217 @@ public class PrinterUtil {
             double pageWidthMm,
             double pageHeightMm,
             Boolean waitJsReady) {
-        synchronized (printerNameOrId.intern()) {
-            Path tempDir = null;
-            try {
-                // 1. 准备工作目录和 HTML 文件
-                tempDir = Files.createTempDirectory("print_");
-                Path htmlFile = tempDir.resolve("index.html");
-                Files.writeString(htmlFile, html, StandardCharsets.UTF_8);
-                if (imports != null) {
-                    for (Map.Entry<String, String> importEntry : imports.entrySet()) {
-                        Path importPath = tempDir.resolve(importEntry.getKey());
-                        Files.writeString(importPath, importEntry.getValue(), StandardCharsets.UTF_8);
-                    }
-                }
+        byte[] pdfData = renderHtml(html, imports, pageWidthMm, pageHeightMm, waitJsReady);
+        printPdf(pdfData, printerNameOrId);
+    }
 
-                // 2. 复制资源文件到临时目录
-                File importFiles = new File("src/main/resources/imports");// 开发环境路径
-                if (!importFiles.exists() || !importFiles.isDirectory()) {
-                    String os = System.getProperty("os.name").toLowerCase();
-                    if (os.contains("win")) {
-                        importFiles = new File("app/classes/imports");// Windows安装路径
-                    } else if (os.contains("mac")) {
-                        importFiles = new File("/Applications/MuppetPrint.app/Contents/app/classes/imports");// MacOS安装路径
-                    }
+    /**
+     * 使用 Playwright (Chrome 内核) 将 HTML 渲染为 PDF
+     * 
+     * @param html         HTML 内容
+     * @param imports      相关依赖文件内容映射，key 为文件名，value 为文件内容
+     * @param pageWidthMm  页面宽度（毫米）
+     * @param pageHeightMm 页面高度（毫米）
+     * @param waitJsReady  是否等待 JS 设置 window.printReady 为 true 再生成
+     * @return PDF 字节数组
+     */
+    public static byte[] renderHtml(
+            String html,
+            Map<String, String> imports,
+            double pageWidthMm,
+            double pageHeightMm,
+            Boolean waitJsReady) {
+        return renderHtmlRaster(html, imports, null, pageWidthMm, pageHeightMm, waitJsReady, 0, false);
+    }
+
+    /**
+     * 使用 Playwright (Chrome 内核) 将 HTML 按打印机分辨率截图为位图，不生成 PDF
+     * 
+     * @param html         HTML 内容
+     * @param imports      相关依赖文件内容映射，key 为文件名，value 为文件内容
+     * @param pageWidthMm  页面宽度（毫米）
+     * @param pageHeightMm 页面高度（毫米）
+     * @param waitJsReady  是否等待 JS 设置 window.printReady 为 true 再截图
+     * @param dpi          打印机分辨率
+     * @return PNG 字节数组
+     */
+    public static byte[] renderHtmlRaster(
+            String html,
+            Map<String, String> imports,
+            double pageWidthMm,
+            double pageHeightMm,
+            Boolean waitJsReady,
+            int dpi) {
+        return renderHtmlRaster(html, imports, null, pageWidthMm, pageHeightMm, waitJsReady, dpi, false);
+    }
+
+    /**
+     * 渲染 HTML，相同输入命中渲染缓存时不再调用 Chromium
+     * 
+     * @param binaryImports 二进制依赖文件，key 为文件名，value 为文件字节（与 imports 同名时以此为准）
+     * @param dpi       打印机分辨率，0 表示生成 PDF
+     * @param skipCache 是否跳过缓存（不读取也不写入）
+     * @return PNG 字节数组（dpi 为 0 时为 PDF）
+     */
+    public static byte[] renderHtmlRaster(
+            String html,
+            Map<String, String> imports,
+            Map<String, byte[]> binaryImports,
+            double pageWidthMm,
+            double pageHeightMm,
+            Boolean waitJsReady,
+            int dpi,
+            boolean skipCache) {
+        Supplier<byte[]> render = () -> {
+            try (BrowserPool.Lease lease = BrowserPool.borrow();
+                    BrowserContext context = lease.newContext(dpi > 0 ? rasterContext(dpi) : null)) {
+                return renderHtml(context.newPage(), html, imports, binaryImports, pageWidthMm, pageHeightMm,
+                        waitJsReady, dpi);
+            }
+        };
+        if (skipCache) {
+            return render.get();
+        }
+        return RenderCache.getOrRender(
+                htmlCacheKey(html, imports, binaryImports, pageWidthMm, pageHeightMm, waitJsReady, dpi), render);
+    }
+
+    /**
+     * 批量渲染：借用一个浏览器，所有 HTML 在同一个上下文中依次渲染，模板使用该浏览器的预热页面
+     * 
+     * @param requests 渲染请求
+     * @return 与请求顺序一致的 PDF 字节数组
+     */
+    public static List<byte[]> renderBatch(List<RenderRequest> requests) {
+        return renderBatch(requests, 0);
+    }
+
+    /**
+     * 批量渲染，rasterDpi 大于 0 时按该分辨率截图为 PNG，否则生成 PDF
+     */
+    public static List<byte[]> renderBatch(List<RenderRequest> requests, int rasterDpi) {
+        // 先查渲染缓存，全部命中时不借用浏览器
+        List<byte[]> results = new ArrayList<>(requests.size());
+        String[] keys = new String[requests.size()];
+        int misses = 0;
+        for (int i = 0; i < requests.size(); i++) {
+            RenderRequest request = requests.get(i);
+            byte[] cached = null;
+            if (!request.isSkipCache()) {
+                keys[i] = cacheKey(request, rasterDpi);
+                cached = RenderCache.get(keys[i]);
+            }
+            results.add(cached);
+            if (cached == null) {
+                misses++;
+            }
+        }
+        if (misses == 0) {
+            log.info("Batch of {} document(s) served from render cache", results.size());
+            return results;
+        }
+        try (BrowserPool.Lease lease = BrowserPool.borrow();
+                BrowserContext context = lease.newContext(rasterDpi > 0 ? rasterContext(rasterDpi) : null)) {
+            Page page = null;
+            for (int i = 0; i < requests.size(); i++) {
+                if (results.get(i) != null) {
+                    continue;
                 }
-                if (importFiles.exists() && importFiles.isDirectory()) {
-                    Path importRoot = importFiles.toPath();
-                    copyDirWithStructure(importRoot, tempDir, importRoot);
+                RenderRequest request = requests.get(i);
+                byte[] rendered;
+                if (request.getTemplateId() != null && !request.getTemplateId().isBlank()) {
+                    TemplateRegistry.PrintTemplate template = TemplateRegistry.get(request.getTemplateId());
+                    if (template == null) {
+                        throw new ServiceException("Template not found: " + request.getTemplateId());
+                    }
+                    rendered = renderTemplate(lease, template, request.getData(), rasterDpi);
                 } else {
-                    UiStarter.error("imports?" + new File(".").getAbsolutePath());
-                }
-
-                // 3. 确定打印机名称
-                String printerName = printerNameOrId;
-                if (printerName == null || printerName.isBlank()) {
-                    PrintService defaultService = PrintServiceLookup.lookupDefaultPrintService();
-                    if (defaultService == null) {
-                        throw new IllegalStateException("No default printer found");
+                    if (page == null) {
+                        page = context.newPage();
+                    } else {
+                        page.unrouteAll();
                     }
-                    printerName = defaultService.getName();
+                    rendered = renderHtml(page, request.getHtml(), request.getImports(), request.getBinaryImports(),
+                            request.getPageWidthMm(), request.getPageHeightMm(), request.getWaitJsReady(), rasterDpi);
+                }
+                if (keys[i] != null) {
+                    RenderCache.put(keys[i], rendered);
                 }
+                results.set(i, rendered);
+            }
+        }
+        log.info("Batch rendered {} document(s), {} from render cache", results.size(), results.size() - misses);
+        return results;
+    }
 
-                log.info("Target printer: {}", printerName);
-                log.info("Printing HTML with Chromium to printer: {}", printerName);
+    /** 渲染请求的缓存 key */
+    private static String cacheKey(RenderRequest request, int rasterDpi) {
+        if (request.getTemplateId() != null && !request.getTemplateId().isBlank()) {
+            return templateCacheKey(request.getTemplateId(), request.getData(), rasterDpi);
+        }
+        return htmlCacheKey(request.getHtml(), request.getImports(), request.getBinaryImports(),
+                request.getPageWidthMm(), request.getPageHeightMm(), request.getWaitJsReady(), rasterDpi);
+    }
 
-                // 4. 使用 Playwright 通过 CDP 协议直接打印
-                printWithChromeCDP(htmlFile, printerName, pageWidthMm, pageHeightMm, tempDir, waitJsReady);
-            } catch (Exception e) {
-                if (e instanceof java.lang.IllegalStateException && e.getMessage().contains("Printer not found")) {
-                    throw new ServiceException(e.getMessage());
-                }
-                throw new RuntimeException(e);
-            } finally {
-                if (tempDir != null) {
-                    log.info("临时文件在: {}", tempDir.toAbsolutePath());
-                    cleanupDir(tempDir);
-                    log.info("临时文件已清理: {}", tempDir.toAbsolutePath());
-                }
+    private static String htmlCacheKey(String html, Map<String, String> imports, Map<String, byte[]> binaryImports,
+            double pageWidthMm, double pageHeightMm, Boolean waitJsReady, int rasterDpi) {
+        return RenderCache.key("html", html, imports, binaryImports, pageWidthMm, pageHeightMm, waitJsReady, rasterDpi);
+    }
+
+    /**
+     * 模板按内容（而不是版本号）区分：版本号重启后从头开始，磁盘缓存却会保留；模板不存在时渲染会报错，不会用到 key
+     */
+    private static String templateCacheKey(String templateId, Object data, int rasterDpi) {
+        TemplateRegistry.PrintTemplate template = TemplateRegistry.get(templateId);
+        if (template == null) {
+            return RenderCache.key("template", templateId);
+        }
+        return RenderCache.key("template", template.getFiles(), template.getPageWidthMm(), template.getPageHeightMm(),
+                Json.encode(data), rasterDpi);
+    }
+
+    /**
+     * 合并多个 PDF 为一个多页 PDF
+     */
+    public static byte[] mergePdf(List<byte[]> pdfs) {
+        if (pdfs.size() == 1) {
+            return pdfs.get(0);
+        }
+        try {
+            PDFMergerUtility merger = new PDFMergerUtility();
+            for (byte[] pdf : pdfs) {
+                merger.addSource(new ByteArrayInputStream(pdf));
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            merger.setDestinationStream(out);
+            merger.mergeDocuments(memoryUsage(pdfs.stream().mapToLong(pdf -> pdf.length).sum()));
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** 在给定页面中打开 HTML 并生成 PDF，rasterDpi 大于 0 时截图为 PNG */
+    private static byte[] renderHtml(Page page, String html, Map<String, String> imports,
+            Map<String, byte[]> binaryImports, double pageWidthMm, double pageHeightMm, Boolean waitJsReady, int rasterDpi) {
+        Path tempDir = null;
+        try {
+            // 1. 准备页面内容：默认全部在内存中，关闭内存模式时写入临时目录
+            if (MuppetConfig.RENDER_IN_MEMORY) {
+                PrintAssets.route(page, PrintAssets.jobFiles(html, imports, binaryImports));
+            } else {
+                tempDir = prepareWorkDir("print_", html, imports, binaryImports);
+                PrintAssets.route(page, tempDir);
+            }
+
+            // 2. 使用 Playwright 生成 PDF
+            return renderWithChromeCDP(page, pageWidthMm, pageHeightMm, waitJsReady, rasterDpi);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            if (tempDir != null) {
+                cleanupDir(tempDir);
+                log.info("临时文件已清理: {}", tempDir.toAbsolutePath());
             }
         }
     }
@@ -155,132 +353,707 @@ public class PrinterUtil {
     /**
      * 打印PDF（二进制文件）
      * 
+     * 同一台打印机的任务由任务队列串行提交，这里不再加锁
+     * 
      * @param pdfData         PDF文件的字节数组
      * @param printerNameOrId 打印机名称或ID
      */
-    public static void printPdf(byte[] pdfData, String printerName) {
-        synchronized (printerName.intern()) {
-            // 查找打印机
-            PrintService targetPrinter = findPrinter(printerName);
-            if (targetPrinter == null) {
-                throw new IllegalStateException("Printer not found: " + printerName);
-            }
-            log.info("Sending PDF to printer: {}", targetPrinter.getName());
-            // 使用 Java Print Service 直接打印 PDF 数据
-            printPdfData(pdfData, targetPrinter);
+    public static void printPdf(byte[] pdfData, String printerNameOrId) {
+        // 与送打印机通道相同：原始指令、直接发送 PDF（带页面尺寸）或 PDFBox 渲染后打印
+        try (PdfBatch batch = new PdfBatch()) {
+            batch.append(List.of(pdfData));
+            batch.print(printerNameOrId);
+        } catch (IOException e) {
+            throw new ServiceException("Invalid PDF: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 设置打印机的送打印机方式
+     */
+    public static void setPrintMode(String printerNameOrId, PrintMode printMode) {
+        String key = printerKey(printerNameOrId);
+        if (printMode == null) {
+            printModes.remove(key);
+        } else {
+            printModes.put(key, printMode);
+        }
+    }
+
+    /**
+     * 打印机的送打印机方式，未单独设置时沿用所属组的设置，再没有时为 muppet.print.mode
+     */
+    public static PrintMode getPrintMode(String printerNameOrId) {
+        PrintMode printMode = printModes.get(printerKey(printerNameOrId));
+        if (printMode == null) {
+            // 组成员沿用组的设置
+            PrinterGroups.PrinterGroup group = PrinterGroups.groupOf(printerNameOrId);
+            printMode = group == null ? null : printModes.get(printerKey(group.getName()));
         }
+        return printMode == null ? MuppetConfig.PRINT_MODE : printMode;
+    }
+
+    /**
+     * 设置位图模式和标签机原始指令模式的分辨率，为空时恢复默认
+     */
+    public static void setLabelDpi(String printerNameOrId, Integer dpi) {
+        String key = printerKey(printerNameOrId);
+        if (dpi == null) {
+            labelDpis.remove(key);
+        } else {
+            labelDpis.put(key, dpi);
+        }
+    }
+
+    /**
+     * 位图模式和标签机原始指令模式的分辨率，未单独设置时为 muppet.label.dpi
+     */
+    public static int getLabelDpi(String printerNameOrId) {
+        Integer dpi = labelDpis.get(printerKey(printerNameOrId));
+        if (dpi == null) {
+            PrinterGroups.PrinterGroup group = PrinterGroups.groupOf(printerNameOrId);
+            dpi = group == null ? null : labelDpis.get(printerKey(group.getName()));
+        }
+        return dpi == null ? MuppetConfig.LABEL_DPI : dpi;
+    }
+
+    /** 发送打印机原始指令，打印机自行识别格式 */
+    private static void sendRaw(byte[] data, String printerNameOrId) {
+        PrintService targetPrinter = findPrinter(printerNameOrId);
+        if (targetPrinter == null) {
+            throw new ServiceException("Printer not found: " + printerNameOrId);
+        }
+        try {
+            targetPrinter.createPrintJob().print(new SimpleDoc(data, DocFlavor.BYTE_ARRAY.AUTOSENSE, null), null);
+            log.info("Raw commands submitted successfully to {}, size: {} bytes", targetPrinter.getName(), data.length);
+        } catch (PrintException e) {
+            throw new ServiceException("Print failed on " + targetPrinter.getName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * 打印机是否接受 PDF 原始数据（以打印机注册表中的能力为准）
+     */
+    public static boolean supportsPdf(PrintService printer) {
+        return pdfFlavor(printer) != null;
+    }
+
+    private static String printerKey(String printerNameOrId) {
+        return printerNameOrId == null ? "" : printerNameOrId.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /** 打印机支持的 PDF 格式，优先字节数组，不支持（或打印机拒绝过）时返回 null */
+    private static DocFlavor pdfFlavor(PrintService printer) {
+        return PrinterRegistry.capabilities(printer).getPdfFlavor();
     }
 
-    /** 递归复制目录及其子目录下所有文件，保留目录结构 */
-    private static void copyDirWithStructure(Path sourceDir, Path targetDir, Path rootDir) throws IOException {
-        if (Files.isDirectory(sourceDir)) {
-            try (var stream = Files.list(sourceDir)) {
-                for (Path entry : (Iterable<Path>) stream::iterator) {
-                    copyDirWithStructure(entry, targetDir, rootDir);
+    /** 按送打印机方式确定直接发送 PDF 的格式，使用 PDFBox 时返回 null */
+    private static DocFlavor directFlavor(PrintService printer) {
+        return switch (getPrintMode(printer.getName())) {
+            case PDFBOX, RASTER, ZPL, ESC_POS, TSPL -> null;
+            case AUTO -> pdfFlavor(printer);
+            case PDF_DIRECT -> Optional.ofNullable(pdfFlavor(printer)).orElse(DocFlavor.BYTE_ARRAY.PDF);
+        };
+    }
+
+    /**
+     * 直接发送 PDF 原始字节，打印机拒绝时返回 false 由调用方退回 PDFBox
+     */
+    private static boolean printDirect(byte[] pdfData, DocFlavor flavor, PrintService printer,
+            PrintRequestAttributeSet attributes) {
+        Object printData = flavor instanceof DocFlavor.INPUT_STREAM ? new ByteArrayInputStream(pdfData) : pdfData;
+        return printDirect(printData, pdfData.length, flavor, printer, attributes);
+    }
+
+    /**
+     * 直接发送 PDF 文件，打印机支持流格式时边读边发送
+     */
+    private static boolean printDirect(Path pdfFile, DocFlavor flavor, PrintService printer,
+            PrintRequestAttributeSet attributes) {
+        try {
+            if (flavor instanceof DocFlavor.INPUT_STREAM) {
+                try (InputStream in = new BufferedInputStream(Files.newInputStream(pdfFile))) {
+                    return printDirect(in, Files.size(pdfFile), flavor, printer, attributes);
                 }
             }
-        } else {
-            Path relative = rootDir.relativize(sourceDir);
-            Path destPath = targetDir.resolve(relative);
-            Files.createDirectories(destPath.getParent());
-            Files.copy(sourceDir, destPath, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+            return printDirect(Files.readAllBytes(pdfFile), flavor, printer, attributes);
+        } catch (IOException e) {
+            throw new ServiceException("Failed to read PDF file: " + e.getMessage());
+        }
+    }
+
+    private static boolean printDirect(Object printData, long size, DocFlavor flavor, PrintService printer,
+            PrintRequestAttributeSet attributes) {
+        try {
+            printer.createPrintJob().print(new SimpleDoc(printData, flavor, null), attributes);
+            log.info("Print job submitted successfully to {} as raw PDF, size: {} bytes, media: {}", printer.getName(),
+                    size, attributes.get(MediaSizeName.class));
+            return true;
+        } catch (PrintException e) {
+            log.warn("Printer {} rejected raw PDF, falling back to PDFBox: {}", printer.getName(), e.toString());
+            if (e instanceof FlavorException) {
+                PrinterRegistry.rejectPdf(printer);
+            }
+            return false;
         }
     }
 
     /**
-     * 使用 Playwright (Chrome 内核) 渲染 HTML 并直接打印到物理打印机 通过 Playwright 生成 PDF 字节流，然后使用 Java Print Service API 发送到打印机
+     * 直接发送 PDF 时的纸张：打印机支持的纸张（含驱动自定义的标签尺寸）中有与首页尺寸相同（误差 1mm，可横放）的，
+     * 指定该纸张并以整页为可打印区域；没有时不指定，由打印机使用默认纸张
      */
-    private static void printWithChromeCDP(Path htmlFile, String printerName,
-            double pageWidthMm, double pageHeightMm, Path tempDir, Boolean waitJsReady) throws Exception {
-        try (Playwright playwright = Playwright.create()) {
-            Browser browser = playwright.chromium().launch(new BrowserType.LaunchOptions()
-                    .setHeadless(true));
-            Page page = browser.newPage();
-            // 导航到 HTML 文件
-            String fileUrl = "file://" + htmlFile.toAbsolutePath().toString();
-            page.navigate(fileUrl);
-            page.waitForLoadState();
-            log.info("Page loaded, generating PDF for printing...");
-            if (waitJsReady != null && waitJsReady) {
-                page.waitForFunction("() => window.printReady === true");
+    private static PrintRequestAttributeSet mediaAttributes(PDDocument document, PrintService printer) {
+        PrintRequestAttributeSet attributes = new HashPrintRequestAttributeSet();
+        if (document.getNumberOfPages() == 0) {
+            return attributes;
+        }
+        PDPage page = document.getPage(0);
+        PDRectangle box = page.getMediaBox();
+        boolean rotated = page.getRotation() % 180 != 0;
+        float widthMm = (rotated ? box.getHeight() : box.getWidth()) * 25.4f / 72;
+        float heightMm = (rotated ? box.getWidth() : box.getHeight()) * 25.4f / 72;
+        List<MediaSizeName> supported = PrinterRegistry.capabilities(printer).getMediaSizeNames();
+        for (MediaSizeName name : supported == null ? List.<MediaSizeName>of() : supported) {
+            MediaSize size = MediaSize.getMediaSizeForName(name);
+            if (size == null) {
+                continue;
+            }
+            float x = size.getX(MediaSize.MM);
+            float y = size.getY(MediaSize.MM);
+            if (Math.abs(x - widthMm) <= 1 && Math.abs(y - heightMm) <= 1
+                    || Math.abs(x - heightMm) <= 1 && Math.abs(y - widthMm) <= 1) {
+                attributes.add(name);
+                attributes.add(new MediaPrintableArea(0, 0, x, y, MediaPrintableArea.MM));
+                return attributes;
             }
-            // 使用 Playwright 生成 PDF 字节数组
-            Page.PdfOptions options = new Page.PdfOptions()
-                    .setWidth(mm(pageWidthMm))
-                    .setHeight(mm(pageHeightMm))
-                    .setPrintBackground(true)
-                    .setMargin(new com.microsoft.playwright.options.Margin()
-                            .setTop("0")
-                            .setBottom("0")
-                            .setLeft("0")
-                            .setRight("0"));
-
-            byte[] pdfData = page.pdf(options);
-            log.info("PDF generated by Playwright, size: {} bytes", pdfData.length);
-            // 保存PDF文件用于调试
-            Path pdfFile = tempDir.resolve("print_output.pdf");
-            Files.write(pdfFile, pdfData);
-            log.info("===== PDF文件已保存: {} =====", pdfFile.toAbsolutePath());
-            browser.close();
-            printPdf(pdfData, printerName);
-        } catch (Exception e) {
-            throw e;
         }
+        log.debug("No media of {}x{}mm on {}, using the default media", widthMm, heightMm, printer.getName());
+        return attributes;
     }
 
     /**
-     * 查找指定名称的打印机
+     * 使用已注册的模板打印，预热页面中只推送数据 d 由 petite-vue 重新渲染，不再重新加载页面
+     * 
+     * @param templateId      模板ID
+     * @param data            模板数据 d
+     * @param printerNameOrId 打印机名称或 ID
      */
-    private static PrintService findPrinter(String printerName) {
-        if (printerName == null || printerName.isBlank()) {
-            return PrintServiceLookup.lookupDefaultPrintService();
+    public static void printTemplate(String templateId, Object data, String printerNameOrId) {
+        byte[] pdfData = renderTemplate(templateId, data);
+        printPdf(pdfData, printerNameOrId);
+    }
+
+    /**
+     * 使用已注册的模板渲染 PDF
+     * 
+     * @param templateId 模板ID
+     * @param data       模板数据 d
+     * @return PDF 字节数组
+     */
+    public static byte[] renderTemplate(String templateId, Object data) {
+        return renderTemplateRaster(templateId, data, 0);
+    }
+
+    /**
+     * 使用已注册的模板按打印机分辨率截图为位图
+     * 
+     * @param templateId 模板ID
+     * @param data       模板数据 d
+     * @param dpi        打印机分辨率，0 表示生成 PDF
+     * @return PNG 字节数组（dpi 为 0 时为 PDF）
+     */
+    public static byte[] renderTemplateRaster(String templateId, Object data, int dpi) {
+        return renderTemplateRaster(templateId, data, dpi, false);
+    }
+
+    /**
+     * 使用已注册的模板渲染，相同模板版本和数据命中渲染缓存时不再调用 Chromium
+     * 
+     * @param skipCache 是否跳过缓存（不读取也不写入）
+     */
+    public static byte[] renderTemplateRaster(String templateId, Object data, int dpi, boolean skipCache) {
+        TemplateRegistry.PrintTemplate template = TemplateRegistry.get(templateId);
+        if (template == null) {
+            throw new ServiceException("Template not found: " + templateId);
         }
+        Supplier<byte[]> render = () -> {
+            try (BrowserPool.Lease lease = BrowserPool.borrow()) {
+                return renderTemplate(lease, template, data, dpi);
+            }
+        };
+        if (skipCache) {
+            return render.get();
+        }
+        return RenderCache.getOrRender(templateCacheKey(templateId, data, dpi), render);
+    }
 
-        PrintService[] services = PrintServiceLookup.lookupPrintServices(null, null);
-        for (PrintService service : services) {
-            if (service.getName().equals(printerName) ||
-                    service.getName().equalsIgnoreCase(printerName)) {
-                return service;
+    /**
+     * 在一个浏览器中预先加载模板，注册模板后调用
+     */
+    static void warmTemplate(TemplateRegistry.PrintTemplate template) {
+        try (BrowserPool.Lease lease = BrowserPool.borrow()) {
+            lease.warmPage(template.getTemplateId(), template.getVersion(), page -> loadTemplatePage(page, template, 0));
+        }
+    }
+
+    /** 推送数据到借用浏览器上的预热页面并生成 PDF，rasterDpi 大于 0 时截图为 PNG */
+    private static byte[] renderTemplate(BrowserPool.Lease lease, TemplateRegistry.PrintTemplate template, Object data,
+            int rasterDpi) {
+        // 位图模式的设备像素比不同，按分辨率各自预热
+        String key = rasterDpi > 0 ? template.getTemplateId() + "@" + rasterDpi : template.getTemplateId();
+        Page page = lease.warmPage(key, template.getVersion(), rasterDpi > 0 ? rasterContext(rasterDpi) : null,
+                p -> loadTemplatePage(p, template, rasterDpi));
+        try {
+            page.evaluate("d => window.muppetRender(d)", data);
+            page.waitForFunction("() => window.printReady === true");
+            byte[] output = rasterDpi > 0
+                    ? screenshot(page)
+                    : page.pdf(pdfOptions(template.getPageWidthMm(), template.getPageHeightMm()));
+            log.info("Template {} rendered, size: {} bytes", template.getTemplateId(), output.length);
+            if (rasterDpi <= 0) {
+                saveDebugPdf(output);
             }
+            return output;
+        } catch (RuntimeException e) {
+            // 页面状态未知，丢弃后下次重新加载
+            lease.dropWarmPage(key);
+            throw e;
         }
+    }
 
-        return null;
+    /** 首次加载模板页面，等待脚本、字体加载完成 */
+    private static void loadTemplatePage(Page page, TemplateRegistry.PrintTemplate template, int rasterDpi) {
+        if (rasterDpi > 0) {
+            prepareRasterPage(page, template.getPageWidthMm(), template.getPageHeightMm());
+        }
+        PrintAssets.route(page, template.getFiles());
+        page.navigate(PrintAssets.BASE_URL + "index.html");
+        page.waitForLoadState();
+        page.waitForFunction("() => window.printReady === true");
+        if (!Boolean.TRUE.equals(page.evaluate("() => typeof window.muppetRender === 'function'"))) {
+            throw new ServiceException("Template must include js/print.js: " + template.getTemplateId());
+        }
+        log.info("Template {} loaded into warm page", template.getTemplateId());
     }
 
     /**
-     * 使用 Java Print Service API 打印 PDF 数据
+     * 准备工作目录：只写入本任务的 HTML 和 imports，公共资源由 PrintAssets 统一提供
      */
-    private static boolean printPdfData(byte[] pdfData, PrintService printer) {
-        // 在Windows上直接使用 javax.print 发送 PDF 原始字节常常不被驱动支持，
-        // 改为使用 PDFBox + PrinterJob 进行页面渲染后打印，更稳定可靠。
-        org.apache.pdfbox.pdmodel.PDDocument document = null;
-        try {
-            document = org.apache.pdfbox.pdmodel.PDDocument.load(pdfData);
+    static Path prepareWorkDir(String prefix, String html, Map<String, String> imports,
+            Map<String, byte[]> binaryImports) throws IOException {
+        Path tempDir = Files.createTempDirectory(prefix);
+        Path htmlFile = tempDir.resolve("index.html");
+        Files.writeString(htmlFile, html, StandardCharsets.UTF_8);
+        if (imports != null) {
+            for (Map.Entry<String, String> importEntry : imports.entrySet()) {
+                Path importPath = tempDir.resolve(importEntry.getKey());
+                Files.createDirectories(importPath.getParent());
+                Files.writeString(importPath, importEntry.getValue(), StandardCharsets.UTF_8);
+            }
+        }
+        if (binaryImports != null) {
+            for (Map.Entry<String, byte[]> importEntry : binaryImports.entrySet()) {
+                Path importPath = tempDir.resolve(importEntry.getKey());
+                Files.createDirectories(importPath.getParent());
+                Files.write(importPath, importEntry.getValue());
+            }
+        }
+
+        return tempDir;
+    }
+
+    /**
+     * 使用 Playwright (Chrome 内核) 渲染 HTML 生成 PDF 字节流，rasterDpi 大于 0 时截图为 PNG
+     */
+    private static byte[] renderWithChromeCDP(Page page, double pageWidthMm, double pageHeightMm, Boolean waitJsReady,
+            int rasterDpi) {
+        if (rasterDpi > 0) {
+            prepareRasterPage(page, pageWidthMm, pageHeightMm);
+        }
+        // 以虚拟地址打开 HTML，页面和资源由 PrintAssets 拦截提供
+        page.navigate(PrintAssets.BASE_URL + "index.html");
+        page.waitForLoadState();
+        if (waitJsReady != null && waitJsReady) {
+            page.waitForFunction("() => window.printReady === true");
+        }
+        // load 事件不保证排版中才请求的字体已加载完，未加载完时会以后备字体输出
+        page.evaluate("() => document.fonts.ready.then(() => true)");
+        if (rasterDpi > 0) {
+            byte[] pngData = screenshot(page);
+            log.info("Page rendered as {} dpi bitmap, size: {} bytes", rasterDpi, pngData.length);
+            return pngData;
+        }
+        log.info("Page loaded, generating PDF for printing...");
+        // 使用 Playwright 生成 PDF 字节数组
+        byte[] pdfData = page.pdf(pdfOptions(pageWidthMm, pageHeightMm));
+        log.info("PDF generated by Playwright, size: {} bytes", pdfData.length);
+        saveDebugPdf(pdfData);
+        return pdfData;
+    }
+
+    /** 位图模式的上下文：设备像素比 = 打印机分辨率 / 96，截图即为打印机原生分辨率 */
+    private static Browser.NewContextOptions rasterContext(int dpi) {
+        return new Browser.NewContextOptions().setDeviceScaleFactor(dpi / 96.0);
+    }
+
+    /** 视口设为纸张尺寸，并按打印样式（@media print）排版，与 PDF 一致 */
+    private static void prepareRasterPage(Page page, double pageWidthMm, double pageHeightMm) {
+        page.setViewportSize(cssPx(pageWidthMm), cssPx(pageHeightMm));
+        page.emulateMedia(new Page.EmulateMediaOptions().setMedia(Media.PRINT));
+    }
+
+    private static byte[] screenshot(Page page) {
+        return page.screenshot(new Page.ScreenshotOptions().setType(ScreenshotType.PNG));
+    }
+
+    /** 毫米转 CSS 像素（96 dpi） */
+    private static int cssPx(double mm) {
+        return (int) Math.round(mm / 25.4 * 96);
+    }
+
+    /**
+     * 查找指定名称的打印机
+     */
+    private static PrintService findPrinter(String printerName) {
+        return PrinterRegistry.find(printerName);
+    }
 
+    /**
+     * 以一个 PrinterJob 打印整个文档（只产生一个后台打印任务）
+     */
+    private static void printDocument(PDDocument document, PrintService printer) {
+        try {
             PrinterJob printerJob = PrinterJob.getPrinterJob();
             printerJob.setPrintService(printer);
 
             // 使用 PDFPageable 以页为单位打印，避免自己拆分页
-            org.apache.pdfbox.printing.PDFPageable pageable = new org.apache.pdfbox.printing.PDFPageable(document);
-            printerJob.setPageable(pageable);
+            printerJob.setPageable(new PDFPageable(document));
 
             // 不弹出打印对话框，直接提交
             printerJob.print();
 
-            log.info("Print job submitted successfully to {} with PDFBox", printer.getName());
-            return true;
+            log.info("Print job submitted successfully to {} with PDFBox, pages: {}", printer.getName(),
+                    document.getNumberOfPages());
         } catch (Exception e) {
             log.error("Failed to print PDF via PDFBox", e);
-            return false;
-        } finally {
-            if (document != null) {
+            throw new ServiceException("Print failed on " + printer.getName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * 合并打印：多个文档作为一个打印任务提交，减少后台打印任务的开销
+     */
+    public interface SpoolBatch extends AutoCloseable {
+        /**
+         * 追加一组文档；任意一个无法解析时整组都不追加
+         *
+         * @return 追加的页数
+         */
+        int append(List<byte[]> documents) throws IOException;
+
+        /**
+         * 追加一个文件中的文档
+         *
+         * @return 追加的页数
+         */
+        int append(Path file) throws IOException;
+
+        /** 已追加的页数 */
+        int getPageCount();
+
+        /** 以一个打印任务提交所有页 */
+        void print(String printerNameOrId);
+
+        @Override
+        void close();
+    }
+
+    /**
+     * PDF 合并打印：把多个 PDF 拼接为一个文档，以一个 PrinterJob 提交
+     */
+    public static class PdfBatch implements SpoolBatch {
+        private final PDFMergerUtility merger = new PDFMergerUtility();
+        /** 源文档，打印完成前需保持打开；只有一个时直接打印该文档，不复制 */
+        private final List<PDDocument> sources = new ArrayList<>();
+        /** 两个及以上源文档时的拼接结果 */
+        private PDDocument merged;
+        /** 只有一个源文档时的原始数据（byte[] 或文件），直接发送 PDF 时使用 */
+        private Object singleSource;
+
+        @Override
+        public int append(List<byte[]> pdfs) throws IOException {
+            List<PDDocument> loaded = new ArrayList<>(pdfs.size());
+            try {
+                for (byte[] pdf : pdfs) {
+                    loaded.add(loadPdf(pdf));
+                }
+            } catch (IOException e) {
+                for (PDDocument doc : loaded) {
+                    doc.close();
+                }
+                throw e;
+            }
+            int pages = 0;
+            for (int i = 0; i < loaded.size(); i++) {
+                pages += add(loaded.get(i), pdfs.get(i));
+            }
+            return pages;
+        }
+
+        /**
+         * 追加一个 PDF 文件，PDFBox 从文件按需读取，不把整个文件读入内存
+         */
+        @Override
+        public int append(Path pdfFile) throws IOException {
+            return add(loadPdf(pdfFile), pdfFile);
+        }
+
+        private int add(PDDocument doc, Object source) throws IOException {
+            if (sources.isEmpty()) {
+                singleSource = source;
+            } else {
+                if (merged == null) {
+                    merged = new PDDocument(memoryUsage(Long.MAX_VALUE));
+                    merger.appendDocument(merged, sources.get(0));
+                }
+                merger.appendDocument(merged, doc);
+                singleSource = null;
+            }
+            sources.add(doc);
+            return doc.getNumberOfPages();
+        }
+
+        /** 要打印的文档 */
+        private PDDocument document() {
+            return merged != null ? merged : sources.get(0);
+        }
+
+        @Override
+        public int getPageCount() {
+            return sources.isEmpty() ? 0 : document().getNumberOfPages();
+        }
+
+        @Override
+        public void print(String printerNameOrId) {
+            PrintMode printMode = getPrintMode(printerNameOrId);
+            if (printMode.isRawCommand()) {
                 try {
-                    document.close();
-                } catch (Exception ignore) {}
+                    sendRaw(LabelCommands.encode(printMode, document(), getLabelDpi(printerNameOrId)), printerNameOrId);
+                } catch (IOException e) {
+                    throw new ServiceException("Failed to render label: " + e.getMessage());
+                }
+                return;
+            }
+            PrintService targetPrinter = findPrinter(printerNameOrId);
+            if (targetPrinter == null) {
+                throw new ServiceException("Printer not found: " + printerNameOrId);
+            }
+            log.info("Sending {} page(s) to printer: {}", getPageCount(), targetPrinter.getName());
+            DocFlavor directFlavor = directFlavor(targetPrinter);
+            if (directFlavor != null) {
+                PrintRequestAttributeSet attributes = mediaAttributes(document(), targetPrinter);
+                boolean printed = singleSource instanceof Path pdfFile
+                        ? printDirect(pdfFile, directFlavor, targetPrinter, attributes)
+                        : printDirect(toBytes(), directFlavor, targetPrinter, attributes);
+                if (printed) {
+                    return;
+                }
+            }
+            printDocument(document(), targetPrinter);
+        }
+
+        /** 只有一个源 PDF 时直接使用原始数据，否则保存拼接后的文档 */
+        private byte[] toBytes() {
+            try {
+                if (singleSource instanceof byte[] pdfData) {
+                    return pdfData;
+                }
+                if (singleSource instanceof Path pdfFile) {
+                    return Files.readAllBytes(pdfFile);
+                }
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                document().save(out);
+                return out.toByteArray();
+            } catch (IOException e) {
+                throw new ServiceException("Failed to save merged PDF: " + e.getMessage());
+            }
+        }
+
+        @Override
+        public void close() {
+            if (merged != null) {
+                try {
+                    merged.close();
+                } catch (IOException ignore) {}
+            }
+            for (PDDocument source : sources) {
+                try {
+                    source.close();
+                } catch (IOException ignore) {}
+            }
+        }
+    }
+
+    /**
+     * 位图合并打印：截图得到的 PNG 每张一页，通过 Printable 直接绘制，不经过 PDF 和 PDFBox
+     */
+    public static class RasterBatch implements SpoolBatch {
+        private final List<BufferedImage> images = new ArrayList<>();
+
+        @Override
+        public int append(List<byte[]> pngs) throws IOException {
+            List<BufferedImage> decoded = new ArrayList<>(pngs.size());
+            for (byte[] png : pngs) {
+                BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+                if (image == null) {
+                    throw new IOException("Unsupported image data");
+                }
+                decoded.add(image);
             }
+            images.addAll(decoded);
+            return decoded.size();
+        }
+
+        @Override
+        public int append(Path imageFile) throws IOException {
+            return append(List.of(Files.readAllBytes(imageFile)));
+        }
+
+        @Override
+        public int getPageCount() {
+            return images.size();
+        }
+
+        @Override
+        public void print(String printerNameOrId) {
+            PrintMode printMode = getPrintMode(printerNameOrId);
+            int dpi = getLabelDpi(printerNameOrId);
+            if (printMode.isRawCommand()) {
+                sendRaw(LabelCommands.encode(printMode, images, dpi), printerNameOrId);
+                return;
+            }
+            PrintService targetPrinter = findPrinter(printerNameOrId);
+            if (targetPrinter == null) {
+                throw new ServiceException("Printer not found: " + printerNameOrId);
+            }
+            log.info("Sending {} bitmap page(s) to printer: {}", images.size(), targetPrinter.getName());
+            printImages(images, dpi, targetPrinter);
+        }
+
+        @Override
+        public void close() {
+            images.clear();
         }
     }
 
+    /**
+     * 以一个 PrinterJob 打印位图，每张一页，纸张尺寸按分辨率由像素换算
+     */
+    private static void printImages(List<BufferedImage> images, int dpi, PrintService printer) {
+        double scale = 72.0 / dpi;
+        Book book = new Book();
+        for (BufferedImage image : images) {
+            double width = image.getWidth() * scale;
+            double height = image.getHeight() * scale;
+            Paper paper = new Paper();
+            paper.setSize(width, height);
+            paper.setImageableArea(0, 0, width, height);
+            PageFormat pageFormat = new PageFormat();
+            pageFormat.setPaper(paper);
+            book.append((graphics, format, pageIndex) -> {
+                Graphics2D g2 = (Graphics2D) graphics;
+                g2.translate(format.getImageableX(), format.getImageableY());
+                g2.scale(scale, scale);
+                g2.drawImage(image, 0, 0, null);
+                return Printable.PAGE_EXISTS;
+            }, pageFormat);
+        }
+        try {
+            PrinterJob printerJob = PrinterJob.getPrinterJob();
+            printerJob.setPrintService(printer);
+            printerJob.setPageable(book);
+            printerJob.print();
+            log.info("Print job submitted successfully to {} as bitmap, pages: {}", printer.getName(), images.size());
+        } catch (Exception e) {
+            log.error("Failed to print bitmap", e);
+            throw new ServiceException("Print failed on " + printer.getName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * 加载内存中的 PDF；超过 muppet.pdf.memoryBytes 时 PDFBox 的解码数据写入临时文件，并且不缓存图片
+     */
+    private static PDDocument loadPdf(byte[] pdfData) throws IOException {
+        PDDocument document = PDDocument.load(pdfData, "", null, null, memoryUsage(pdfData.length));
+        limitResourceCache(document, pdfData.length);
+        return document;
+    }
+
+    /**
+     * 从文件加载 PDF，按需读取文件内容，不把整个文件读入内存
+     */
+    private static PDDocument loadPdf(Path pdfFile) throws IOException {
+        long size = Files.size(pdfFile);
+        PDDocument document = PDDocument.load(pdfFile.toFile(), memoryUsage(size));
+        limitResourceCache(document, size);
+        return document;
+    }
+
+    /**
+     * 小文档全部在内存中处理；大文档最多使用 muppet.pdf.memoryBytes 内存，其余写入临时文件
+     */
+    private static MemoryUsageSetting memoryUsage(long size) {
+        if (size <= MuppetConfig.PDF_MEMORY_BYTES) {
+            return MemoryUsageSetting.setupMainMemoryOnly();
+        }
+        return MemoryUsageSetting.setupMixed(MuppetConfig.PDF_MEMORY_BYTES);
+    }
+
+    /**
+     * 大文档逐页打印时不缓存图片（字体等仍缓存），已打印页面的图片可以被回收
+     */
+    private static void limitResourceCache(PDDocument document, long size) {
+        if (size > MuppetConfig.PDF_MEMORY_BYTES) {
+            document.setResourceCache(new DefaultResourceCache() {
+                @Override
+                public void put(COSObject indirect, PDXObject xobject) {}
+            });
+        }
+    }
+
+    /**
+     * 配置了 muppet.debug.pdfDir 时，保存PDF文件用于调试
+     */
+    private static void saveDebugPdf(byte[] pdfData) {
+        if (MuppetConfig.DEBUG_PDF_DIR.isEmpty()) {
+            return;
+        }
+        try {
+            Path debugDir = Path.of(MuppetConfig.DEBUG_PDF_DIR);
+            Files.createDirectories(debugDir);
+            Path pdfFile = Files.createTempFile(debugDir, "print_output_", ".pdf");
+            Files.write(pdfFile, pdfData);
+            log.info("===== PDF文件已保存: {} =====", pdfFile.toAbsolutePath());
+        } catch (IOException e) {
+            log.warn("Failed to save debug PDF: {}", e.toString());
+        }
+    }
+
+    /**
+     * 零边距、按毫米指定尺寸的 PDF 参数
+     */
+    private static Page.PdfOptions pdfOptions(double pageWidthMm, double pageHeightMm) {
+        return new Page.PdfOptions()
+                .setWidth(mm(pageWidthMm))
+                .setHeight(mm(pageHeightMm))
+                .setPrintBackground(true)
+                .setMargin(new com.microsoft.playwright.options.Margin()
+                        .setTop("0")
+                        .setBottom("0")
+                        .setLeft("0")
+                        .setRight("0"));
+    }
+
     /**
      * 将毫米转换为 Playwright 的尺寸字符串
      */
@@ -300,19 +1073,18 @@ public class PrinterUtil {
     }
 
     /**
-     * 清理临时目录
+     * 清理临时目录（递归删除）
      */
-    private static void cleanupDir(Path dir) {
-        try {
-            if (dir == null)
-                return;
-            // 先删除目录中的文件，再删除目录本身
-            Files.list(dir).forEach(p -> {
+    static void cleanupDir(Path dir) {
+        if (dir == null)
+            return;
+        try (var stream = Files.walk(dir)) {
+            // 先删除子文件、子目录，再删除目录本身
+            stream.sorted(java.util.Comparator.reverseOrder()).forEach(p -> {
                 try {
                     Files.deleteIfExists(p);
                 } catch (IOException ignored) {}
             });
-            Files.deleteIfExists(dir);
         } catch (IOException ignored) {}
     }
 }
@@ -0,0 +1,84 @@
+package com.xuesinuo.muppet.tool;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+
+/**
+ * 位图模式与 PDF 模式的耗时对比：100x150mm 标签，到得到打印机分辨率的位图为止（送打印机前的全部开销）
+ *
+ * PDF 模式：page.pdf → PDDocument.load → PDFRenderer 光栅化（即 PDFPageable 打印时所做的工作）
+ * 位图模式：page.screenshot → ImageIO.read
+ *
+ * 每轮内容相同，跳过渲染缓存
+ */
+@Slf4j
+public class RasterBenchmarkExample {
+    public static void main(String[] args) throws Exception {
+        int dpi = args.length > 0 ? Integer.parseInt(args[0]) : 203;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        String html = """
+                <!DOCTYPE html>
+                <html>
+                <head>
+                  <meta charset="utf-8" />
+                  <style>
+                    body { margin: 0; font-family: Arial, sans-serif; }
+                    .label { width: 100mm; height: 150mm; box-sizing: border-box; border: 1mm solid #000; padding: 4mm; }
+                    h1 { font-size: 9mm; margin: 0 0 4mm; }
+                    .bars { display: flex; gap: 0.4mm; height: 25mm; margin-top: 6mm; }
+                    .bars i { background: #000; width: 0.6mm; }
+                    .bars i:nth-child(3n) { width: 1.2mm; }
+                  </style>
+                </head>
+                <body>
+                  <div class="label">
+                    <h1>MUPPET PRINT</h1>
+                    <div>SHIP TO: 上海市浦东新区 100 号</div>
+                    <div>ORDER: 2024-000123456</div>
+                    <div class="bars">""" + "<i></i>".repeat(60) + """
+                    </div>
+                  </div>
+                </body>
+                </html>
+                """;
+        // 预热浏览器和 JIT
+        BrowserPool.warmUp();
+        for (int i = 0; i < 3; i++) {
+            viaPdf(html, dpi);
+            viaRaster(html, dpi);
+        }
+
+        long pdfNanos = 0;
+        long rasterNanos = 0;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            viaPdf(html, dpi);
+            pdfNanos += System.nanoTime() - start;
+            start = System.nanoTime();
+            viaRaster(html, dpi);
+            rasterNanos += System.nanoTime() - start;
+        }
+        log.info("{} rounds at {} dpi: PDF path avg {} ms, raster path avg {} ms", rounds, dpi,
+                pdfNanos / rounds / 1_000_000.0, rasterNanos / rounds / 1_000_000.0);
+        BrowserPool.shutdown();
+    }
+
+    private static BufferedImage viaPdf(String html, int dpi) throws Exception {
+        byte[] pdf = PrinterUtil.renderHtmlRaster(html, null, null, 100, 150, false, 0, true);
+        try (PDDocument document = PDDocument.load(pdf)) {
+            return new PDFRenderer(document).renderImageWithDPI(0, dpi, ImageType.BINARY);
+        }
+    }
+
+    private static BufferedImage viaRaster(String html, int dpi) throws Exception {
+        byte[] png = PrinterUtil.renderHtmlRaster(html, null, null, 100, 150, false, dpi, true);
+        return ImageIO.read(new ByteArrayInputStream(png));
+    }
+}
@@ -0,0 +1,371 @@
+package com.xuesinuo.muppet.tool;
+
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.Route;
+import com.xuesinuo.muppet.config.MuppetConfig;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 远程资源缓存
+ *
+ * 打印页面引用的远程 CSS、图片、字体（如 CDN 上的 logo）经 Playwright 请求拦截由本类提供：按 HTTP 缓存语义（Cache-Control、Expires、
+ * ETag、Last-Modified）在进程内缓存，过期后带条件请求重新验证，不再由每个新建的浏览器上下文重复下载。按总字节数 LRU 淘汰；
+ * 源站不可达时使用已过期的缓存，离线也能打印。
+ * 
+ * 只拦截样式表、图片、字体；文档、脚本、XHR/fetch 以及带 Authorization、Cookie 的请求仍由 Chromium 自己发出。
+ * 下载使用系统默认代理，源站不可达后一段时间内不再尝试，直接交回 Chromium，避免每个任务都等待超时。
+ */
+@Slf4j
+public class RemoteAssets {
+
+    /**
+     * 远程资源（响应）
+     */
+    @AllArgsConstructor
+    @Data
+    public static class Asset {
+        public int status; // 状态码
+        public Map<String, String> headers; // 转发给页面的响应头
+        public byte[] body; // 响应体
+        public String etag; // ETag
+        public String lastModified; // Last-Modified
+        public String cacheControl; // Cache-Control，304 响应不带时沿用
+        public long expiresAt; // 新鲜期截止时间（毫秒时间戳），之后需要重新验证
+    }
+
+    /**
+     * 缓存统计
+     */
+    @AllArgsConstructor
+    @Data
+    public static class AssetStats {
+        public long hits; // 新鲜命中
+        public long revalidated; // 重新验证后沿用（304）
+        public long fetched; // 从源站下载
+        public long staleServed; // 源站不可达时使用过期缓存
+        public long failures; // 下载失败
+        public int entries; // 缓存条目数
+        public long bytes; // 缓存字节数
+    }
+
+    /** 没有任何缓存信息时的新鲜期 */
+    private static final long DEFAULT_FRESH_MS = 5 * 60_000L;
+    /** 按 Last-Modified 推算新鲜期时的上限 */
+    private static final long HEURISTIC_MAX_MS = 24 * 3600_000L;
+    /** 转发给源站的请求头 */
+    private static final String[] FORWARD_REQUEST_HEADERS = { "accept", "origin" };
+    /** 拦截的资源类型 */
+    private static final Set<String> CACHED_RESOURCE_TYPES = Set.of("stylesheet", "image", "font");
+    /** 源站不可达后暂停下载的时长 */
+    private static final long FAILURE_BACKOFF_MS = 60_000L;
+
+    private static final HttpClient client = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .proxy(ProxySelector.getDefault())
+            .connectTimeout(Duration.ofMillis(MuppetConfig.ASSET_TIMEOUT_MS))
+            .build();
+    /** 缓存，按访问顺序排列 */
+    private static final LinkedHashMap<String, Asset> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private static long cacheBytes;
+    /** 下载中的资源，多个页面同时请求同一地址时只下载一次 */
+    private static final Map<String, CompletableFuture<Asset>> loading = new ConcurrentHashMap<>();
+    /** 最近不可达的主机及恢复尝试的时间 */
+    private static final Map<String, Long> failedHosts = new ConcurrentHashMap<>();
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong revalidated = new AtomicLong();
+    private static final AtomicLong fetched = new AtomicLong();
+    private static final AtomicLong staleServed = new AtomicLong();
+    private static final AtomicLong failures = new AtomicLong();
+
+    /**
+     * 为页面安装远程资源拦截（http/https，不含 {@link PrintAssets#BASE_URL}），缓存关闭时不拦截
+     */
+    public static void route(Page page) {
+        if (MuppetConfig.ASSET_CACHE_BYTES <= 0) {
+            return;
+        }
+        page.route(RemoteAssets::isRemote, RemoteAssets::serve);
+    }
+
+    /**
+     * 读取远程资源：新鲜的缓存直接返回，过期的先重新验证
+     *
+     * @param url            资源地址
+     * @param requestHeaders 页面发出的请求头（小写 key），只转发 accept、origin
+     * @return 资源，下载失败（或主机最近不可达）且没有缓存时返回 null
+     */
+    public static Asset get(String url, Map<String, String> requestHeaders) {
+        Asset cached;
+        synchronized (cache) {
+            cached = cache.get(url);
+        }
+        if (cached != null && cached.getExpiresAt() > System.currentTimeMillis()) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        CompletableFuture<Asset> mine = new CompletableFuture<>();
+        CompletableFuture<Asset> running = loading.putIfAbsent(url, mine);
+        if (running != null) {
+            return running.join();
+        }
+        try {
+            Asset asset = load(url, requestHeaders, cached);
+            mine.complete(asset);
+            return asset;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(url, mine);
+        }
+    }
+
+    public static AssetStats stats() {
+        synchronized (cache) {
+            return new AssetStats(hits.get(), revalidated.get(), fetched.get(), staleServed.get(), failures.get(),
+                    cache.size(), cacheBytes);
+        }
+    }
+
+    private static boolean isRemote(String url) {
+        return (url.startsWith("http://") || url.startsWith("https://")) && !url.startsWith(PrintAssets.BASE_URL);
+    }
+
+    private static void serve(Route route) {
+        if (!"GET".equals(route.request().method())
+                || !CACHED_RESOURCE_TYPES.contains(route.request().resourceType())) {
+            route.resume();
+            return;
+        }
+        // headers() 不含 Cookie，需要看完整的请求头；带凭证的请求结果因人而异，不缓存
+        Map<String, String> allHeaders = route.request().allHeaders();
+        if (allHeaders.containsKey("authorization") || allHeaders.containsKey("cookie")) {
+            route.resume();
+            return;
+        }
+        Asset asset = get(route.request().url(), route.request().headers());
+        if (asset == null) {
+            // 交给 Chromium 自己请求（例如需要系统代理的地址）
+            route.resume();
+            return;
+        }
+        route.fulfill(new Route.FulfillOptions()
+                .setStatus(asset.getStatus())
+                .setHeaders(asset.getHeaders())
+                .setBodyBytes(asset.getBody()));
+    }
+
+    private static Asset load(String url, Map<String, String> requestHeaders, Asset cached) {
+        URI uri;
+        HttpRequest.Builder request;
+        try {
+            uri = URI.create(url);
+            request = HttpRequest.newBuilder(uri)
+                    .timeout(Duration.ofMillis(MuppetConfig.ASSET_TIMEOUT_MS))
+                    .GET();
+        } catch (IllegalArgumentException e) {
+            failures.incrementAndGet();
+            return null;
+        }
+        String host = uri.getHost();
+        Long retryAt = host == null ? null : failedHosts.get(host);
+        if (retryAt != null) {
+            if (retryAt > System.currentTimeMillis()) {
+                if (cached != null) {
+                    staleServed.incrementAndGet();
+                }
+                return cached;
+            }
+            failedHosts.remove(host, retryAt);
+        }
+        if (requestHeaders != null) {
+            for (String name : FORWARD_REQUEST_HEADERS) {
+                String value = requestHeaders.get(name);
+                if (value != null) {
+                    request.header(name, value);
+                }
+            }
+        }
+        if (cached != null && cached.getEtag() != null) {
+            request.header("If-None-Match", cached.getEtag());
+        }
+        if (cached != null && cached.getLastModified() != null) {
+            request.header("If-Modified-Since", cached.getLastModified());
+        }
+        HttpResponse<byte[]> response;
+        try {
+            response = client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (IOException e) {
+            if (host != null) {
+                failedHosts.put(host, System.currentTimeMillis() + FAILURE_BACKOFF_MS);
+            }
+            return unreachable(url, cached, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return unreachable(url, cached, e);
+        }
+        long now = System.currentTimeMillis();
+        HttpHeaders headers = response.headers();
+        if (response.statusCode() == 304 && cached != null) {
+            revalidated.incrementAndGet();
+            String cacheControl = headers.firstValue("cache-control").orElse(cached.getCacheControl());
+            Asset refreshed = new Asset(cached.getStatus(), cached.getHeaders(), cached.getBody(),
+                    headers.firstValue("etag").orElse(cached.getEtag()),
+                    headers.firstValue("last-modified").orElse(cached.getLastModified()), cacheControl,
+                    expiresAt(headers, cacheControl, now, cached.getLastModified()));
+            store(url, refreshed);
+            return refreshed;
+        }
+        fetched.incrementAndGet();
+        String cacheControl = headers.firstValue("cache-control").orElse(null);
+        Asset asset = new Asset(response.statusCode(), forwardHeaders(headers), response.body(),
+                headers.firstValue("etag").orElse(null), headers.firstValue("last-modified").orElse(null), cacheControl,
+                expiresAt(headers, cacheControl, now, null));
+        if (asset.getStatus() == 200 && cacheable(headers)) {
+            store(url, asset);
+        } else {
+            remove(url);
+        }
+        return asset;
+    }
+
+    /** 源站不可达：有缓存时继续使用过期缓存 */
+    private static Asset unreachable(String url, Asset cached, Exception e) {
+        if (cached != null) {
+            staleServed.incrementAndGet();
+            log.debug("Remote asset {} unreachable, serving stale copy: {}", url, e.toString());
+            return cached;
+        }
+        failures.incrementAndGet();
+        log.warn("Remote asset {} unreachable: {}", url, e.toString());
+        return null;
+    }
+
+    private static boolean cacheable(HttpHeaders headers) {
+        String cacheControl = headers.firstValue("cache-control").orElse("").toLowerCase(Locale.ROOT);
+        if (cacheControl.contains("no-store") || headers.allValues("vary").stream().anyMatch(v -> v.contains("*"))) {
+            return false;
+        }
+        // no-cache 表示每次都要验证，没有验证器时缓存没有意义
+        return !cacheControl.contains("no-cache")
+                || headers.firstValue("etag").isPresent()
+                || headers.firstValue("last-modified").isPresent();
+    }
+
+    /**
+     * 计算新鲜期：Cache-Control 的 no-cache / max-age 优先，其次 Expires，再次按 Last-Modified 推算（距今时长的 10%，最多一天），
+     * 都没有时使用默认新鲜期
+     */
+    private static long expiresAt(HttpHeaders headers, String cacheControlValue, long now, String previousLastModified) {
+        String cacheControl = cacheControlValue == null ? "" : cacheControlValue.toLowerCase(Locale.ROOT);
+        if (cacheControl.contains("no-cache")) {
+            return now;
+        }
+        Optional<Long> maxAge = directive(cacheControl, "max-age");
+        if (maxAge.isPresent()) {
+            long age = headers.firstValue("age").map(RemoteAssets::parseLong).orElse(0L);
+            return now + Math.max(0, maxAge.get() - age) * 1000;
+        }
+        Optional<Long> expires = headers.firstValue("expires").map(RemoteAssets::parseDate);
+        if (expires.isPresent()) {
+            long date = headers.firstValue("date").map(RemoteAssets::parseDate).orElse(now);
+            return now + Math.max(0, expires.get() - date);
+        }
+        Long lastModified = headers.firstValue("last-modified").or(() -> Optional.ofNullable(previousLastModified))
+                .map(RemoteAssets::parseDate).orElse(null);
+        if (lastModified != null) {
+            return now + Math.min(HEURISTIC_MAX_MS, Math.max(0, now - lastModified) / 10);
+        }
+        return now + DEFAULT_FRESH_MS;
+    }
+
+    private static Optional<Long> directive(String cacheControl, String name) {
+        for (String part : cacheControl.split(",")) {
+            String[] pair = part.trim().split("=", 2);
+            if (pair.length == 2 && pair[0].trim().equals(name)) {
+                return Optional.ofNullable(parseLong(pair[1].trim().replace("\"", "")));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /** 只转发内容类型和跨域相关的响应头，字体跨域加载需要 Access-Control-Allow-Origin */
+    private static Map<String, String> forwardHeaders(HttpHeaders headers) {
+        Map<String, String> forward = new LinkedHashMap<>();
+        headers.map().forEach((name, values) -> {
+            String lower = name.toLowerCase(Locale.ROOT);
+            if (!values.isEmpty() && (lower.equals("content-type") || lower.startsWith("access-control-")
+                    || lower.equals("timing-allow-origin"))) {
+                forward.put(lower, String.join(", ", values));
+            }
+        });
+        return forward;
+    }
+
+    private static void store(String url, Asset asset) {
+        long size = asset.getBody().length;
+        // 单个资源超过上限的四分之一时不缓存，避免冲掉其他资源
+        if (size > MuppetConfig.ASSET_CACHE_BYTES / 4) {
+            remove(url);
+            return;
+        }
+        synchronized (cache) {
+            Asset old = cache.put(url, asset);
+            cacheBytes += size - (old == null ? 0 : old.getBody().length);
+            Iterator<Asset> eldest = cache.values().iterator();
+            while (cacheBytes > MuppetConfig.ASSET_CACHE_BYTES && eldest.hasNext()) {
+                cacheBytes -= eldest.next().getBody().length;
+                eldest.remove();
+            }
+        }
+    }
+
+    private static void remove(String url) {
+        synchronized (cache) {
+            Asset old = cache.remove(url);
+            if (old != null) {
+                cacheBytes -= old.getBody().length;
+            }
+        }
+    }
+
+    private static Long parseLong(String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Long parseDate(String value) {
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
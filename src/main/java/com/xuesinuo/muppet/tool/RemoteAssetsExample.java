@@ -0,0 +1,92 @@
+package com.xuesinuo.muppet.tool;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 远程资源缓存示例：在本机启动一个替身 CDN，离线验证缓存、重新验证（304）和不缓存的资源，最后关闭替身验证使用过期缓存
+ */
+@Slf4j
+public class RemoteAssetsExample {
+
+    /** 替身 CDN 上各路径被请求的次数 */
+    private static final Map<String, AtomicInteger> originRequests = new ConcurrentHashMap<>();
+
+    public static void main(String[] args) throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // 一小时内新鲜
+        server.createContext("/style.css", http -> respond(http, "text/css",
+                Map.of("Cache-Control", "max-age=3600"), "body { color: black; }"));
+        // 每次都要验证，ETag 不变时返回 304
+        server.createContext("/logo.svg", http -> {
+            if ("\"logo-v1\"".equals(http.getRequestHeaders().getFirst("If-None-Match"))) {
+                count(http);
+                http.sendResponseHeaders(304, -1);
+                http.close();
+                return;
+            }
+            respond(http, "image/svg+xml", Map.of("Cache-Control", "no-cache", "ETag", "\"logo-v1\""),
+                    "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"10\" height=\"10\"/>");
+        });
+        // 字体跨域加载，需要转发 Access-Control-Allow-Origin；立即过期，按 Last-Modified 验证
+        server.createContext("/font.woff2", http -> {
+            String lastModified = "Mon, 01 Jan 2024 00:00:00 GMT";
+            if (lastModified.equals(http.getRequestHeaders().getFirst("If-Modified-Since"))) {
+                count(http);
+                http.sendResponseHeaders(304, -1);
+                http.close();
+                return;
+            }
+            respond(http, "font/woff2", Map.of("Cache-Control", "max-age=0", "Last-Modified", lastModified,
+                    "Access-Control-Allow-Origin", "*"), "woff2");
+        });
+        // 不允许缓存
+        server.createContext("/counter.js", http -> respond(http, "application/javascript",
+                Map.of("Cache-Control", "no-store"), "window.n = 1;"));
+        server.start();
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        Map<String, String> requestHeaders = Map.of("accept", "*/*", "origin", PrintAssets.BASE_URL.replaceAll("/$", ""));
+        try {
+            for (int round = 1; round <= 3; round++) {
+                for (String path : new String[] { "/style.css", "/logo.svg", "/font.woff2", "/counter.js" }) {
+                    RemoteAssets.Asset asset = RemoteAssets.get(base + path, requestHeaders);
+                    log.info("round {} {}: status {}, {} bytes, headers {}", round, path, asset.getStatus(),
+                            asset.getBody().length, asset.getHeaders());
+                }
+            }
+        } finally {
+            server.stop(0);
+        }
+        log.info("origin requests: {}", originRequests);
+        // 源站已关闭：logo 需要验证但不可达，继续使用缓存
+        RemoteAssets.Asset offline = RemoteAssets.get(base + "/logo.svg", requestHeaders);
+        log.info("offline /logo.svg: {}", offline == null ? "not available" : offline.getBody().length + " bytes");
+        log.info("stats: {}", RemoteAssets.stats());
+    }
+
+    private static void respond(HttpExchange http, String contentType, Map<String, String> headers, String body)
+            throws IOException {
+        count(http);
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        http.getResponseHeaders().add("Content-Type", contentType);
+        headers.forEach((name, value) -> http.getResponseHeaders().add(name, value));
+        http.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = http.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void count(HttpExchange http) {
+        originRequests.computeIfAbsent(http.getRequestURI().getPath(), k -> new AtomicInteger()).incrementAndGet();
+    }
+}
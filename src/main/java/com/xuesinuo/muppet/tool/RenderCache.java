@@ -0,0 +1,265 @@
+package com.xuesinuo.muppet.tool;
+
+import com.xuesinuo.muppet.config.MuppetConfig;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 渲染结果缓存
+ * 
+ * 补打、重打时内容完全相同，按渲染输入（HTML、imports、页面尺寸、waitJsReady、位图分辨率，或模板内容 + 数据）及版本号、公共资源的 SHA-256
+ * 缓存渲染出的 PDF/PNG，命中时跳过 Chromium 渲染。内存和磁盘两级，各自按总字节数 LRU 淘汰；
+ * 磁盘缓存目录中只管理文件名为 key 的文件，目录中的其他文件不会被索引或删除。
+ */
+@Slf4j
+public class RenderCache {
+
+    /**
+     * 缓存统计
+     */
+    @AllArgsConstructor
+    @Data
+    public static class CacheStats {
+        public long memoryHits; // 内存命中
+        public long diskHits; // 磁盘命中
+        public long misses; // 未命中
+        public int memoryEntries; // 内存中的条目数
+        public long memoryBytes; // 内存中的字节数
+        public int diskEntries; // 磁盘上的条目数
+        public long diskBytes; // 磁盘上的字节数
+    }
+
+    /** 内存缓存，按访问顺序排列 */
+    private static final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(16, 0.75f, true);
+    /** 磁盘缓存索引（文件大小），按访问顺序排列 */
+    private static final LinkedHashMap<String, Long> disk = new LinkedHashMap<>(16, 0.75f, true);
+    private static long memoryBytes;
+    private static long diskBytes;
+    /** 缓存文件名（key）及写入中的临时文件名 */
+    private static final Pattern ENTRY_NAME = Pattern.compile("[0-9a-f]{64}");
+    private static final Pattern TEMP_NAME = Pattern.compile("[0-9a-f]{64}[0-9]+\\.tmp");
+    private static final Path DISK_DIR = MuppetConfig.CACHE_DISK_BYTES > 0 ? initDiskDir() : null;
+    private static final AtomicLong memoryHits = new AtomicLong();
+    private static final AtomicLong diskHits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    /**
+     * 计算缓存 key，各部分依次带长度写入摘要，Map 按 key 排序；版本号和公共资源的摘要总是计入
+     */
+    public static String key(Object... parts) {
+        Object[] all = new Object[parts.length + 1];
+        all[0] = PrintAssets.renderDigest();
+        System.arraycopy(parts, 0, all, 1, parts.length);
+        return digest(all);
+    }
+
+    /**
+     * 各部分依次带长度写入 SHA-256 摘要，Map 按 key 排序
+     */
+    static String digest(Object... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Object part : parts) {
+                update(digest, part);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 命中时返回缓存，否则渲染并写入缓存
+     */
+    public static byte[] getOrRender(String key, Supplier<byte[]> render) {
+        byte[] cached = get(key);
+        if (cached != null) {
+            return cached;
+        }
+        byte[] rendered = render.get();
+        put(key, rendered);
+        return rendered;
+    }
+
+    /**
+     * 读取缓存，未命中返回 null
+     */
+    public static byte[] get(String key) {
+        synchronized (memory) {
+            byte[] data = memory.get(key);
+            if (data != null) {
+                memoryHits.incrementAndGet();
+                return data;
+            }
+        }
+        if (DISK_DIR != null && diskContains(key)) {
+            try {
+                Path file = DISK_DIR.resolve(key);
+                byte[] data = Files.readAllBytes(file);
+                file.toFile().setLastModified(System.currentTimeMillis());
+                diskHits.incrementAndGet();
+                putMemory(key, data);
+                return data;
+            } catch (IOException e) {
+                log.warn("Render cache file unreadable: {}", e.toString());
+                removeDisk(key);
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * 写入缓存
+     */
+    public static void put(String key, byte[] data) {
+        putMemory(key, data);
+        if (DISK_DIR == null || data.length > MuppetConfig.CACHE_DISK_BYTES) {
+            return;
+        }
+        try {
+            Path temp = Files.createTempFile(DISK_DIR, key, ".tmp");
+            Files.write(temp, data);
+            Files.move(temp, DISK_DIR.resolve(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to write render cache: {}", e.toString());
+            return;
+        }
+        synchronized (disk) {
+            Long old = disk.put(key, (long) data.length);
+            diskBytes += data.length - (old == null ? 0 : old);
+            evictDisk();
+        }
+    }
+
+    public static CacheStats stats() {
+        int memoryEntries;
+        long memorySize;
+        synchronized (memory) {
+            memoryEntries = memory.size();
+            memorySize = memoryBytes;
+        }
+        int diskEntries;
+        long diskSize;
+        synchronized (disk) {
+            diskEntries = disk.size();
+            diskSize = diskBytes;
+        }
+        return new CacheStats(memoryHits.get(), diskHits.get(), misses.get(), memoryEntries, memorySize, diskEntries,
+                diskSize);
+    }
+
+    private static void putMemory(String key, byte[] data) {
+        // 单个条目超过内存上限的四分之一时只放磁盘，避免冲掉其他条目
+        if (data.length > MuppetConfig.CACHE_MEMORY_BYTES / 4) {
+            return;
+        }
+        synchronized (memory) {
+            byte[] old = memory.put(key, data);
+            memoryBytes += data.length - (old == null ? 0 : old.length);
+            Iterator<Map.Entry<String, byte[]>> eldest = memory.entrySet().iterator();
+            while (memoryBytes > MuppetConfig.CACHE_MEMORY_BYTES && eldest.hasNext()) {
+                memoryBytes -= eldest.next().getValue().length;
+                eldest.remove();
+            }
+        }
+    }
+
+    private static boolean diskContains(String key) {
+        synchronized (disk) {
+            return disk.get(key) != null;
+        }
+    }
+
+    private static void removeDisk(String key) {
+        synchronized (disk) {
+            Long size = disk.remove(key);
+            if (size != null) {
+                diskBytes -= size;
+            }
+        }
+        DISK_DIR.resolve(key).toFile().delete();
+    }
+
+    /** 调用时持有 disk 锁 */
+    private static void evictDisk() {
+        Iterator<Map.Entry<String, Long>> eldest = disk.entrySet().iterator();
+        while (diskBytes > MuppetConfig.CACHE_DISK_BYTES && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            diskBytes -= entry.getValue();
+            eldest.remove();
+            DISK_DIR.resolve(entry.getKey()).toFile().delete();
+        }
+    }
+
+    /** 创建缓存目录，并按最后访问时间恢复上次运行留下的索引 */
+    private static Path initDiskDir() {
+        Path dir = Path.of(MuppetConfig.CACHE_DIR);
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            log.warn("Render cache disabled on disk, cannot create {}: {}", dir, e.toString());
+            return null;
+        }
+        File[] files = dir.toFile().listFiles();
+        if (files != null) {
+            Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+            for (File file : files) {
+                if (TEMP_NAME.matcher(file.getName()).matches()) {
+                    file.delete();
+                } else if (file.isFile() && ENTRY_NAME.matcher(file.getName()).matches()) {
+                    disk.put(file.getName(), file.length());
+                    diskBytes += file.length();
+                }
+            }
+            log.info("Render cache restored {} entries ({} bytes) from {}", disk.size(), diskBytes, dir);
+        }
+        return dir;
+    }
+
+    private static void update(MessageDigest digest, Object part) {
+        if (part instanceof Map<?, ?> map) {
+            TreeMap<String, Object> sorted = new TreeMap<>();
+            map.forEach((k, v) -> sorted.put(String.valueOf(k), v));
+            digest.update((byte) 'M');
+            update(digest, sorted.size());
+            sorted.forEach((k, v) -> {
+                update(digest, k);
+                update(digest, v);
+            });
+            return;
+        }
+        if (part instanceof byte[] data) {
+            digest.update((byte) 'B');
+            digest.update(ByteBuffer.allocate(4).putInt(data.length).array());
+            digest.update(data);
+            return;
+        }
+        byte[] bytes = String.valueOf(part).getBytes(StandardCharsets.UTF_8);
+        digest.update((byte) (part == null ? 'N' : 'S'));
+        digest.update(ByteBuffer.allocate(4).putInt(bytes.length).array());
+        digest.update(bytes);
+    }
+}
@@ -0,0 +1,88 @@
+package com.xuesinuo.muppet.tool;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 打印模板注册表
+ * 
+ * 模板（HTML + imports，使用 print.js + petite-vue）注册一次后常驻在浏览器的预热页面中，后续打印只推送数据 d 重新渲染。
+ */
+@Slf4j
+public class TemplateRegistry {
+
+    /**
+     * 打印模板
+     */
+    @AllArgsConstructor
+    @Data
+    public static class PrintTemplate {
+        public String templateId; // 模板ID
+        public long version; // 版本号，重新注册时递增，预热页面据此判断是否需要重新加载
+        public double pageWidthMm; // 页面宽度（毫米）
+        public double pageHeightMm; // 页面高度（毫米）
+        @JsonIgnore
+        public Map<String, byte[]> files; // 模板文件（index.html 及 imports），常驻内存
+    }
+
+    private static final Map<String, PrintTemplate> templates = new ConcurrentHashMap<>();
+    private static final AtomicLong versions = new AtomicLong();
+
+    /**
+     * 注册（或替换）模板：先在一个浏览器中预先加载，加载成功后才生效
+     * 
+     * @param templateId   模板ID
+     * @param html         模板 HTML，需引入 js/print.js
+     * @param imports      相关依赖文件内容映射，key 为文件名，value 为文件内容
+     * @param pageWidthMm  页面宽度（毫米）
+     * @param pageHeightMm 页面高度（毫米）
+     * @return 注册后的模板
+     */
+    public static PrintTemplate register(String templateId, String html, Map<String, String> imports,
+            double pageWidthMm, double pageHeightMm) {
+        PrintTemplate template = new PrintTemplate(templateId, versions.incrementAndGet(), pageWidthMm, pageHeightMm,
+                PrintAssets.jobFiles(html, imports));
+        // 先加载成功再注册，加载失败时保留原来可用的版本
+        PrinterUtil.warmTemplate(template);
+        templates.put(templateId, template);
+        log.info("Template {} registered, version: {}", templateId, template.getVersion());
+        return template;
+    }
+
+    /**
+     * 获取模板
+     */
+    public static PrintTemplate get(String templateId) {
+        if (templateId == null) {
+            return null;
+        }
+        return templates.get(templateId);
+    }
+
+    /**
+     * 删除模板，各浏览器中的预热页面随浏览器回收释放
+     */
+    public static boolean remove(String templateId) {
+        if (templates.remove(templateId) == null) {
+            return false;
+        }
+        log.info("Template {} removed", templateId);
+        return true;
+    }
+
+    /**
+     * 所有已注册的模板
+     */
+    public static List<PrintTemplate> list() {
+        return new ArrayList<>(templates.values());
+    }
+}
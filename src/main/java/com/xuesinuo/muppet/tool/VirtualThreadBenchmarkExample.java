@@ -0,0 +1,103 @@
+package com.xuesinuo.muppet.tool;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 平台线程与虚拟线程送打印机的对比：每台打印机一条单线程通道（与任务队列相同），送打印机为一次网络往返，
+ * 由本机替身打印机收下数据后停顿一段时间再应答（模拟驱动、打印服务的等待）。
+ *
+ * 两种模式吞吐量相同（每台打印机都是串行的），区别在于所需的平台线程数。
+ *
+ * 参数：打印机数 每台任务数 每个任务的等待毫秒数
+ */
+@Slf4j
+public class VirtualThreadBenchmarkExample {
+    public static void main(String[] args) throws Exception {
+        int printers = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int jobsPerPrinter = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int waitMillis = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        // 先关闭 server，接收循环才会结束
+        try (ExecutorService printerSide = Executors.newVirtualThreadPerTaskExecutor();
+                ServerSocket server = new ServerSocket(0, 1024, InetAddress.getLoopbackAddress())) {
+            printerSide.execute(() -> accept(server, printerSide, waitMillis));
+            run(false, server.getLocalPort(), printers, jobsPerPrinter);
+            run(true, server.getLocalPort(), printers, jobsPerPrinter);
+            run(false, server.getLocalPort(), printers, jobsPerPrinter);
+            run(true, server.getLocalPort(), printers, jobsPerPrinter);
+        }
+    }
+
+    private static void run(boolean virtual, int port, int printers, int jobsPerPrinter) throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        int baseline = threads.getThreadCount();
+        CountDownLatch done = new CountDownLatch(printers * jobsPerPrinter);
+        List<ThreadPoolExecutor> lanes = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int p = 0; p < printers; p++) {
+            ThreadPoolExecutor lane = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    BlockingThreads.factory("bench-spool-" + p, false, virtual));
+            lanes.add(lane);
+            for (int j = 0; j < jobsPerPrinter; j++) {
+                lane.execute(() -> {
+                    spool(port);
+                    done.countDown();
+                });
+            }
+        }
+        done.await();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        log.info("{} threads: {} printers x {} jobs in {} ms, {} jobs/s, peak platform threads +{}",
+                virtual ? "virtual" : "platform", printers, jobsPerPrinter, millis,
+                printers * jobsPerPrinter * 1000L / Math.max(1, millis), threads.getPeakThreadCount() - baseline);
+        lanes.forEach(ThreadPoolExecutor::shutdown);
+    }
+
+    /** 一次送打印机：发送一页数据，等待替身打印机应答 */
+    private static void spool(int port) {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            OutputStream out = socket.getOutputStream();
+            out.write(new byte[8192]);
+            out.flush();
+            socket.shutdownOutput();
+            socket.getInputStream().read();
+        } catch (Exception e) {
+            log.warn("Spool failed: {}", e.toString());
+        }
+    }
+
+    /** 替身打印机：收完数据后等待 waitMillis 再应答 */
+    private static void accept(ServerSocket server, ExecutorService printerSide, int waitMillis) {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                printerSide.execute(() -> {
+                    try (socket) {
+                        InputStream in = socket.getInputStream();
+                        in.readAllBytes();
+                        Thread.sleep(waitMillis);
+                        socket.getOutputStream().write(1);
+                    } catch (Exception ignored) {}
+                });
+            } catch (Exception e) {
+                return;
+            }
+        }
+    }
+}
@@ -1,29 +1,51 @@
 package com.xuesinuo.muppet.vertx;
 
-import java.util.List;
-
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+
+import com.xuesinuo.muppet.config.MuppetConfig;
 
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.ThreadingModel;
 import io.vertx.core.Verticle;
 import io.vertx.core.Vertx;
-import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
 /**
  * Vertx配置
  * 
+ * WebVerticle 按 muppet.web.instances 部署多个实例，各自运行在一个事件循环上并共用端口，由 Vert.x 轮流分配连接；
+ * 在所有接口注册完路由（应用启动完成）后再部署，之后 Router 只读，可在多个事件循环间共用。
+ * 其他 Verticle 各部署一个实例，按 Bean 类型跳过 WebVerticle，不会多创建一个不部署的原型实例。
+ * 
  * @author xuesinuo
  */
+@Slf4j
 @Configuration
 @RequiredArgsConstructor
 public class VerticleConfiguration {
     private final Vertx vertx;
-    private final List<Verticle> verticles;
+    private final ObjectProvider<WebVerticle> webVerticles;
+    private final ListableBeanFactory beanFactory;
 
-    @PostConstruct
+    @EventListener(ApplicationReadyEvent.class)
     public void deployVerticle() {
-        for (Verticle verticle : verticles) {
-            vertx.deployVerticle(verticle);
+        // 虚拟线程模式下请求处理运行在虚拟线程上，处理中的阻塞调用不占住事件循环
+        DeploymentOptions options = new DeploymentOptions()
+                .setThreadingModel(MuppetConfig.VIRTUAL_THREADS ? ThreadingModel.VIRTUAL_THREAD : ThreadingModel.EVENT_LOOP);
+        int instances = Math.max(1, MuppetConfig.WEB_INSTANCES);
+        vertx.deployVerticle(webVerticles::getObject, new DeploymentOptions(options).setInstances(instances))
+                .onSuccess(id -> log.info("WebVerticle deployed, instances: {}", instances))
+                .onFailure(error -> log.error("WebVerticle deploy failed", error));
+        for (String name : beanFactory.getBeanNamesForType(Verticle.class)) {
+            Class<?> type = beanFactory.getType(name);
+            if (type == null || !WebVerticle.class.isAssignableFrom(type)) {
+                vertx.deployVerticle(beanFactory.getBean(name, Verticle.class), options);
+            }
         }
     }
 }
@@ -33,6 +33,7 @@ public class VertxRouterConfiguration {
                 .allowedMethod(HttpMethod.OPTIONS)
                 .allowedHeader("Content-Type")
                 .allowedHeader("Authorization")
+                .allowedHeader("Content-Encoding")// 浏览器发送 gzip/br 压缩的请求体
                 .allowCredentials(true)
         );
         return router;
@@ -1,8 +1,11 @@
 package com.xuesinuo.muppet.vertx;
 
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.http.HttpServerOptions;
 import io.vertx.ext.web.Router;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -10,10 +13,15 @@ import lombok.extern.slf4j.Slf4j;
 /**
  * Web配置
  * 
+ * 多实例部署，每个实例一个 HTTP 服务（共用端口），所有实例共用同一个 Router
+ * 
+ * 请求体支持 gzip、deflate、br（Content-Encoding）压缩，由 Netty 在进入 Router 前解压，请求体大小限制按解压后计算
+ * 
  * @author xuesinuo
  */
 @Slf4j
 @Component
+@Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
 @RequiredArgsConstructor
 public class WebVerticle extends AbstractVerticle {
     private final Router router;
@@ -21,11 +29,18 @@ public class WebVerticle extends AbstractVerticle {
 
     @Override
     public void start() {
-        vertx.createHttpServer()
+        HttpServerOptions options = new HttpServerOptions()
+                .setDecompressionSupported(true)
+                // h2c 升级请求的请求体不会被解压（请求头却已去掉 Content-Encoding），本地服务只用 HTTP/1.1
+                .setHttp2ClearTextEnabled(false);
+        vertx.createHttpServer(options)
                 .requestHandler(router)
                 .listen(port)
                 .onSuccess(hs -> {
                     log.info("Vert.x run on port: " + hs.actualPort());
+                })
+                .onFailure(error -> {
+                    log.error("Vert.x listen failed on port: " + port, error);
                 });
     }
 }
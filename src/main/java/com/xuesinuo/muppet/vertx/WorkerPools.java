@@ -0,0 +1,151 @@
+package com.xuesinuo.muppet.vertx;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.stereotype.Component;
+
+import com.xuesinuo.muppet.config.MuppetConfig;
+import com.xuesinuo.muppet.job.StageMetrics;
+import com.xuesinuo.muppet.tool.BlockingThreads;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 接口使用的阻塞任务线程池
+ *
+ * 按用途分为渲染（浏览器、模板）、送打印机（文件）、打印机查询三个命名的 Vert.x WorkerExecutor，互不占用；
+ * 任务以无序方式执行，同一事件循环提交的阻塞任务不再互相排队。
+ * 虚拟线程模式下送打印机和打印机查询的任务改为每个任务一个虚拟线程，不受线程数限制；渲染任务使用浏览器，仍使用 WorkerExecutor。
+ *
+ * @author xuesinuo
+ */
+@Component
+@RequiredArgsConstructor
+public class WorkerPools {
+
+    /**
+     * 线程池用途
+     */
+    public enum Pool {
+        /** 浏览器预热、模板注册等使用浏览器的任务 */
+        RENDER,
+        /** 送打印机相关的文件操作 */
+        SPOOL,
+        /** 打印机查询 */
+        DISCOVERY
+    }
+
+    /**
+     * 线程池统计
+     */
+    @AllArgsConstructor
+    @Data
+    public static class PoolStats {
+        public String name; // 线程池名称
+        public int size; // 线程数，虚拟线程为 0（不限）
+        public int utilization; // 使用率（执行中 / 线程数，百分比），持续 100 表示已饱和；虚拟线程为 0
+        public StageMetrics.Snapshot tasks; // 排队、执行中、完成数和平均耗时
+    }
+
+    @AllArgsConstructor
+    private static class Worker {
+        final String name;
+        final int size;
+        final WorkerExecutor executor; // 平台线程池
+        final ExecutorService virtualExecutor; // 虚拟线程，与 executor 二选一
+        final StageMetrics metrics;
+    }
+
+    private final Vertx vertx;
+    private final Map<Pool, Worker> workers = new EnumMap<>(Pool.class);
+
+    @PostConstruct
+    public void start() {
+        create(Pool.RENDER, MuppetConfig.WORKER_RENDER_THREADS, false);
+        create(Pool.SPOOL, MuppetConfig.WORKER_SPOOL_THREADS, MuppetConfig.VIRTUAL_THREADS);
+        create(Pool.DISCOVERY, MuppetConfig.WORKER_DISCOVERY_THREADS, MuppetConfig.VIRTUAL_THREADS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        for (Worker worker : workers.values()) {
+            if (worker.executor != null) {
+                worker.executor.close();
+            } else {
+                worker.virtualExecutor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * 在指定线程池中无序执行阻塞任务
+     */
+    public <T> Future<T> execute(Pool pool, Callable<T> task) {
+        Worker worker = workers.get(pool);
+        worker.metrics.queued();
+        Callable<T> measured = () -> {
+            worker.metrics.started();
+            long start = System.currentTimeMillis();
+            boolean success = false;
+            try {
+                T result = task.call();
+                success = true;
+                return result;
+            } finally {
+                worker.metrics.finished(System.currentTimeMillis() - start, success);
+            }
+        };
+        if (worker.executor != null) {
+            return worker.executor.executeBlocking(measured, false);
+        }
+        // 结果回到提交任务的 Vert.x 上下文中完成
+        Context context = vertx.getOrCreateContext();
+        Promise<T> promise = Promise.promise();
+        worker.virtualExecutor.execute(() -> {
+            try {
+                T result = measured.call();
+                context.runOnContext(v -> promise.complete(result));
+            } catch (Throwable e) {
+                context.runOnContext(v -> promise.fail(e));
+            }
+        });
+        return promise.future();
+    }
+
+    public List<PoolStats> stats() {
+        List<PoolStats> stats = new ArrayList<>();
+        for (Worker worker : workers.values()) {
+            StageMetrics.Snapshot snapshot = worker.metrics.snapshot();
+            stats.add(new PoolStats(worker.name, worker.size,
+                    worker.size == 0 ? 0 : snapshot.getActive() * 100 / worker.size, snapshot));
+        }
+        return stats;
+    }
+
+    private void create(Pool pool, int threads, boolean virtual) {
+        String name = "muppet-worker-" + pool.name().toLowerCase();
+        if (virtual) {
+            ExecutorService virtualExecutor = Executors.newThreadPerTaskExecutor(BlockingThreads.factory(name, true, true));
+            workers.put(pool, new Worker(name, 0, null, virtualExecutor, new StageMetrics(name)));
+            return;
+        }
+        int size = Math.max(1, threads);
+        workers.put(pool, new Worker(name, size, vertx.createSharedWorkerExecutor(name, size), null,
+                new StageMetrics(name)));
+    }
+}
@@ -40,7 +40,7 @@ var resetPageSize = (w, h, pw, ph) => {
 };
 
 // 初始化VUE，渲染数据，绑定事件
-const app = PetiteVue.createApp({
+const scope = PetiteVue.reactive({
     ...d,
     ...f,
     _pageWidth: printingWidth,
@@ -54,6 +54,7 @@ const app = PetiteVue.createApp({
         window.print();
     }
 });
+const app = PetiteVue.createApp(scope);
 
 // 刷新二维码
 var resetQr = () => {
@@ -108,11 +109,38 @@ var resetBr = () => {
     });
 };
 
+// 模板自带的默认数据，推送新数据时以此为基础，不残留上一条数据的字段
+const dDefaults = JSON.stringify(d);
+
 if (f.init) {
     f.init();
 }
+// 当前写入 scope 的数据字段
+let dKeys = Object.keys(d);
 resetPageSize(w, h, printingWidth, printingHeight);
 app.mount();
 resetQr();
 resetBr();
-window.printReady = true;
\ No newline at end of file
+window.printReady = true;
+
+// 模板预热后，打印服务通过此方法推送新数据重新渲染，不再重新加载页面
+window.muppetRender = (data) => {
+    window.printReady = false;
+    Object.keys(d).forEach(key => delete d[key]);
+    Object.assign(d, JSON.parse(dDefaults), data);
+    if (f.init) {
+        f.init();
+    }
+    // 上一条数据有、这一条没有的字段清空，否则 scope 中仍是上一张标签的值
+    dKeys.filter(key => !(key in d) && !(key in f)).forEach(key => {
+        scope[key] = undefined;
+    });
+    Object.assign(scope, d);
+    dKeys = Object.keys(d);
+    PetiteVue.nextTick(() => {
+        resetPageSize(w, h, scope._pageWidth, scope._pageHeight);
+        resetQr();
+        resetBr();
+        window.printReady = true;
+    });
+};